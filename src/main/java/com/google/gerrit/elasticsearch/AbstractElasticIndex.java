@@ -32,6 +32,7 @@ import com.google.common.io.CharStreams;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.elasticsearch.ElasticMapping.Mapping;
 import com.google.gerrit.elasticsearch.builders.QueryBuilder;
+import com.google.gerrit.elasticsearch.builders.QueryBuilders;
 import com.google.gerrit.elasticsearch.builders.SearchSourceBuilder;
 import com.google.gerrit.elasticsearch.bulk.DeleteRequest;
 import com.google.gerrit.entities.converter.ProtoConverter;
@@ -40,9 +41,9 @@ import com.google.gerrit.index.FieldType;
 import com.google.gerrit.index.Index;
 import com.google.gerrit.index.QueryOptions;
 import com.google.gerrit.index.Schema;
+import com.google.gerrit.index.SchemaFieldDefs.SchemaField;
 import com.google.gerrit.index.query.DataSource;
 import com.google.gerrit.index.query.FieldBundle;
-import com.google.gerrit.index.query.HasCardinality;
 import com.google.gerrit.index.query.ListResultSet;
 import com.google.gerrit.index.query.Predicate;
 import com.google.gerrit.index.query.QueryParseException;
@@ -66,11 +67,17 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
-import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpStatus;
@@ -79,7 +86,6 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.nio.entity.NStringEntity;
-import org.apache.http.util.EntityUtils;
 import org.elasticsearch.client.Request;
 import org.elasticsearch.client.Response;
 
@@ -89,6 +95,7 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
   protected static final String BULK = "_bulk";
   protected static final String COUNT = "_count";
   protected static final String DELETE_BY_QUERY = "_delete_by_query";
+  protected static final String FIELDS = "fields";
   protected static final String MAPPINGS = "mappings";
   protected static final String ORDER = "order";
   protected static final String DESC_SORT_ORDER = "desc";
@@ -96,6 +103,15 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
   protected static final String UNMAPPED_TYPE = "unmapped_type";
   protected static final String SEARCH = "_search";
   protected static final String SETTINGS = "settings";
+  protected static final String SCROLL = "_search/scroll";
+  protected static final String DOC_SORT = "_doc";
+  protected static final String PREFERENCE = "preference";
+  protected static final String ROUTING = "routing";
+  protected static final String MULTI_GET = "_mget";
+  protected static final String REFRESH = "_refresh";
+  protected static final String MAPPING = "_mapping";
+
+  private static final String SCROLL_KEEP_ALIVE = "1m";
 
   static byte[] decodeBase64(String base64String) {
     return BaseEncoding.base64().decode(base64String);
@@ -132,6 +148,34 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
     return content;
   }
 
+  /**
+   * Parses the JSON object of a response directly from its content stream, without reading the
+   * whole content into a string first.
+   */
+  static JsonObject parseContent(Response response) throws IOException {
+    HttpEntity responseEntity = response.getEntity();
+    if (responseEntity == null) {
+      return new JsonObject();
+    }
+    try (InputStream in = responseEntity.getContent()) {
+      return ElasticResponseParser.parse(in);
+    }
+  }
+
+  /**
+   * Like {@link #parseContent(Response)}, but for the response of a search, multi search, multi
+   * get or scroll, of whose hits only the parts read by the index are kept.
+   */
+  static JsonObject parseSearchContent(Response response) throws IOException {
+    HttpEntity responseEntity = response.getEntity();
+    if (responseEntity == null) {
+      return new JsonObject();
+    }
+    try (InputStream in = responseEntity.getContent()) {
+      return ElasticResponseParser.parseSearch(in);
+    }
+  }
+
   private final ElasticConfiguration config;
   private final Schema<V> schema;
   private final SitePaths sitePaths;
@@ -143,9 +187,29 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
   protected final Gson gson;
   protected final ElasticQueryBuilder queryBuilder;
   private final Function<V, K> valueToKeyFunction;
+  private final ElasticCardinalityEstimator cardinalityEstimator;
+  private final ElasticMultiSearch multiSearch;
+  private final ElasticScan scan;
+  private final ElasticHedgedSearch hedgedSearch;
+  private final ElasticSlowQueryLog slowQueryLog;
+  private final ElasticRefresher refresher;
+  private final ElasticOffsetCursors offsetCursors;
+  private final ElasticPagePrefetcher pagePrefetcher;
+  private final ElasticOverFetch overFetch;
+  private final ElasticMetrics metrics;
+  private final ElasticSearchPreference searchPreference;
+  private final long searchTimeout;
+  private final long expensiveSearchTimeout;
+  private final Semaphore expensiveSearches;
+  private final int terminateAfter;
+  private volatile JsonObject indexMeta;
 
   AbstractElasticIndex(
       ElasticConfiguration config,
+      ElasticMetrics metrics,
+      ElasticSearchPreference searchPreference,
+      ElasticCurrentUser currentUser,
+      ElasticExecutor executor,
       SitePaths sitePaths,
       Schema<V> schema,
       ElasticRestClientProvider client,
@@ -156,15 +220,49 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
     this.sitePaths = sitePaths;
     this.schema = schema;
     this.gson = new GsonBuilder().setFieldNamingPolicy(LOWER_CASE_WITH_UNDERSCORES).create();
-    this.queryBuilder = new ElasticQueryBuilder();
+    this.queryBuilder =
+        new ElasticQueryBuilder(
+            config,
+            () -> isTrue(getIndexMeta(), ElasticMapping.META_WILDCARD_SUBFIELDS));
     this.indexName = config.getIndexName(indexName, schema.getVersion());
     this.indexNameRaw = indexName;
     this.client = client;
-    this.refreshParam =
-        Map.of(
-            "refresh",
-            autoFlush == AutoFlush.ENABLED ? Boolean.TRUE.toString() : Boolean.FALSE.toString());
+    this.refresher =
+        new ElasticRefresher(config, autoFlush == AutoFlush.ENABLED, currentUser, this::refresh);
+    this.refreshParam = Map.of("refresh", Boolean.toString(refresher.refreshOnWrite()));
     this.valueToKeyFunction = valueToKeyFunction;
+    this.cardinalityEstimator =
+        new ElasticCardinalityEstimator(
+            config,
+            schema,
+            payload -> {
+              refresher.refreshAllIfNeeded();
+              return search(payload);
+            },
+            executor.get());
+    this.multiSearch =
+        new ElasticMultiSearch(
+            client, config, this.indexName, getURI(ElasticMultiSearch.MULTI_SEARCH));
+    this.scan = new ElasticScan(executor.get(), this.indexName);
+    this.hedgedSearch = new ElasticHedgedSearch(client, config, this.indexName);
+    this.slowQueryLog =
+        new ElasticSlowQueryLog(
+            config,
+            this.indexName,
+            (payload, params) -> performSearchRequest(getURI(SEARCH), payload, params),
+            executor.get());
+    this.offsetCursors = new ElasticOffsetCursors(config);
+    this.pagePrefetcher = new ElasticPagePrefetcher(client, config, this.indexName);
+    this.metrics = metrics;
+    this.searchPreference = searchPreference;
+    this.overFetch = new ElasticOverFetch(config, metrics, indexName);
+    this.searchTimeout = config.getSearchTimeout(indexName);
+    this.expensiveSearchTimeout =
+        searchTimeout > 0
+            ? Math.min(searchTimeout, config.expensiveRegexTimeout)
+            : config.expensiveRegexTimeout;
+    this.expensiveSearches = new Semaphore(Math.max(1, config.expensiveRegexConcurrency));
+    this.terminateAfter = config.getTerminateAfter(indexName);
   }
 
   @Override
@@ -203,10 +301,8 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
               "Request to get number of %s index documents failed: %s",
               indexName, response.getStatusLine().getReasonPhrase()));
     }
-    String content;
     try {
-      content = getContent(response);
-      return JsonParser.parseString(content).getAsJsonObject().get("count").getAsInt();
+      return parseContent(response).get("count").getAsInt();
     } catch (IOException e) {
       throw new StorageException(
           String.format("Request to get number of %s index documents failed", indexName), e);
@@ -247,6 +343,60 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
       String error = String.format("Failed to create index %s: %s", indexName, statusCode);
       throw new StorageException(error);
     }
+    indexMeta = getCreatedIndexMeta();
+  }
+
+  /**
+   * Returns the {@code _meta} of the mapping that the existing index was created with, which
+   * records the options that change how documents are indexed, see {@link ElasticMapping}.
+   * Queries must rely on these rather than on the configuration, which may have changed since the
+   * index was created. If the index does not exist yet, returns the {@code _meta} that it will be
+   * created with.
+   */
+  protected JsonObject getIndexMeta() {
+    JsonObject meta = indexMeta;
+    if (meta != null) {
+      return meta;
+    }
+    Response response =
+        performRequest(
+            HttpGet.METHOD_NAME,
+            getURI(MAPPING),
+            null,
+            ImmutableMap.of("ignore", "404", "filter_path", "*.mappings._meta"));
+    int statusCode = response.getStatusLine().getStatusCode();
+    if (statusCode == HttpStatus.SC_NOT_FOUND) {
+      return getCreatedIndexMeta();
+    }
+    if (statusCode != HttpStatus.SC_OK) {
+      throw new StorageException(
+          String.format("Failed to read mapping of index %s: %s", indexName, statusCode));
+    }
+    try {
+      meta = new JsonObject();
+      for (Map.Entry<String, JsonElement> index : parseContent(response).entrySet()) {
+        JsonElement m = index.getValue().getAsJsonObject().getAsJsonObject(MAPPINGS).get("_meta");
+        if (m != null) {
+          meta = m.getAsJsonObject();
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      throw new StorageException(
+          String.format("Failed to read mapping of index %s", indexName), e);
+    }
+    indexMeta = meta;
+    return meta;
+  }
+
+  private JsonObject getCreatedIndexMeta() {
+    JsonObject mappings = JsonParser.parseString(getMappings()).getAsJsonObject();
+    JsonElement meta = mappings.getAsJsonObject(MAPPINGS).get("_meta");
+    return meta != null ? meta.getAsJsonObject() : new JsonObject();
+  }
+
+  private static boolean isTrue(JsonObject object, String name) {
+    JsonElement value = object.get(name);
+    return value != null && value.getAsBoolean();
   }
 
   protected abstract String getDeleteActions(K id);
@@ -254,7 +404,17 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
   protected abstract String getMappings();
 
   private String getSettings() {
-    return gson.toJson(ImmutableMap.of(SETTINGS, ElasticSetting.createSetting(config)));
+    return gson.toJson(
+        ImmutableMap.of(SETTINGS, ElasticSetting.createSetting(config, getIndexSort())));
+  }
+
+  /**
+   * Returns the fields by which the documents are sorted within the index, mapped to their sort
+   * order. Searches whose sort matches this order can stop collecting hits once the requested
+   * number of hits is reached.
+   */
+  protected ImmutableMap<String, String> getIndexSort() {
+    return ImmutableMap.of();
   }
 
   protected abstract String getId(V v);
@@ -276,10 +436,81 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
 
   protected abstract V fromDocument(JsonObject doc, Set<String> fields);
 
+  /**
+   * Returns the field that holds the id of the document, or null if there is none. Queries for
+   * nothing but values of this field are served by a realtime multi-get instead of a search, which
+   * is cheaper and also returns documents that were written since the last refresh.
+   */
+  @Nullable
+  protected String getIdField() {
+    return null;
+  }
+
+  /**
+   * Whether query results are sorted by the value of {@link #getIdField()} in ascending string
+   * order. If not, only queries for a single id are served by a multi-get, since otherwise the
+   * results would not be sorted like search results.
+   */
+  protected boolean isSortedById() {
+    return false;
+  }
+
+  /**
+   * Returns the routing of searches for the predicate, so that they only hit the shards that can
+   * hold matching documents, or null if all shards must be searched.
+   */
+  @Nullable
+  protected String getRouting(Predicate<V> p) {
+    return null;
+  }
+
+  /**
+   * Returns the function converting the hits of a query into entities. It is created once per
+   * query, so that implementations can prepare everything that only depends on the requested
+   * fields up front instead of for every hit.
+   */
+  protected Function<JsonObject, V> documentMapper(Set<String> fields) {
+    return doc -> fromDocument(doc, fields);
+  }
+
+  /**
+   * Called with the entities of each page of search results that is returned to the caller of a
+   * query, but not for lookups by id or scans, so that implementations can load data that the
+   * caller is going to need for all of them at once.
+   */
+  protected void prefetch(List<V> results, Set<String> fields) {}
+
+  /**
+   * Converts the hits of one result page into entities, skipping hits that cannot be converted.
+   * Implementations that load the entities from a cache can override this to load the whole page
+   * with one bulk lookup instead of one lookup per hit.
+   */
+  protected List<V> fromDocuments(List<JsonObject> docs, Function<JsonObject, V> mapper) {
+    List<V> result = new ArrayList<>(docs.size());
+    for (JsonObject doc : docs) {
+      V v = mapper.apply(doc);
+      if (v != null) {
+        result.add(v);
+      }
+    }
+    return result;
+  }
+
+  private static List<JsonObject> getHits(JsonArray hits) {
+    List<JsonObject> docs = new ArrayList<>(hits.size());
+    for (JsonElement hit : hits) {
+      docs.add(hit.getAsJsonObject());
+    }
+    return docs;
+  }
+
   protected FieldBundle toFieldBundle(JsonObject doc) {
+    JsonElement source = doc.get(client.adapter().rawFieldsKey());
+    if (source == null) {
+      source = doc.get(FIELDS);
+    }
     ListMultimap<String, Object> rawFields = ArrayListMultimap.create();
-    for (Map.Entry<String, JsonElement> element :
-        doc.get(client.adapter().rawFieldsKey()).getAsJsonObject().entrySet()) {
+    for (Map.Entry<String, JsonElement> element : source.getAsJsonObject().entrySet()) {
       checkArgument(
           getSchema().hasField(element.getKey()), "Unrecognized field " + element.getKey());
       FieldType<?> type = getSchema().getSchemaField(element.getKey()).getType();
@@ -295,7 +526,7 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
         } else if (type == FieldType.LONG) {
           rawFields.put(element.getKey(), inner.getAsLong());
         } else if (type == FieldType.TIMESTAMP) {
-          rawFields.put(element.getKey(), new Timestamp(inner.getAsLong()));
+          rawFields.put(element.getKey(), new ElasticStoredValue(inner).asTimestamp());
         } else if (type == FieldType.STORED_ONLY) {
           rawFields.put(element.getKey(), decodeBase64(inner.getAsString()));
         } else {
@@ -306,14 +537,32 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
     return new FieldBundle(rawFields, /* storesIndexedFields= */ false);
   }
 
+  /**
+   * Returns whether the field can be loaded from doc values instead of the document source. Only
+   * single-valued fields are loaded from doc values, since doc values of repeated fields are
+   * sorted and deduplicated.
+   */
+  private boolean isDocValueField(String name) {
+    if (!schema.hasField(name)) {
+      return false;
+    }
+    SchemaField<V, ?> field = schema.getSchemaField(name);
+    FieldType<?> type = field.getType();
+    return !field.isRepeatable()
+        && (type == FieldType.EXACT
+            || type == FieldType.INTEGER
+            || type == FieldType.INTEGER_RANGE
+            || type == FieldType.LONG
+            || type == FieldType.TIMESTAMP);
+  }
+
   protected boolean hasErrors(Response response) {
     try {
       ContentType contentType = ContentType.get(response.getEntity());
       Preconditions.checkState(
           contentType.toString().equalsIgnoreCase(ContentType.APPLICATION_JSON.toString()),
           String.format("Expected %s, but was: %s", ContentType.APPLICATION_JSON, contentType));
-      String responseStr = EntityUtils.toString(response.getEntity());
-      JsonObject responseJson = JsonParser.parseString(responseStr).getAsJsonObject();
+      JsonObject responseJson = parseContent(response);
       boolean hasErrors = responseJson.get("errors").getAsBoolean();
       if (hasErrors) {
         logger.atSevere().log("Response with errors: %s", responseJson);
@@ -335,16 +584,14 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
     return jsonAction.toString() + System.lineSeparator();
   }
 
-  protected void addNamedElement(String name, JsonObject element, JsonArray array) {
+  protected static void addNamedElement(String name, JsonObject element, JsonArray array) {
     JsonObject arrayElement = new JsonObject();
     arrayElement.add(name, element);
     array.add(arrayElement);
   }
 
   protected String getSearch(SearchSourceBuilder searchSource, JsonArray sortArray) {
-    JsonObject search = JsonParser.parseString(searchSource.toString()).getAsJsonObject();
-    search.add("sort", sortArray);
-    return gson.toJson(search);
+    return searchSource.sort(sortArray.toString()).toString();
   }
 
   protected JsonArray getSortArray(String idFieldName) {
@@ -365,7 +612,128 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
   }
 
   protected Response postRequestWithRefreshParam(String uri, Object payload) {
-    return performRequest("POST", uri, payload, refreshParam);
+    return postRequestWithRefreshParam(uri, payload, Collections.emptyMap());
+  }
+
+  protected Response postRequestWithRefreshParam(
+      String uri, Object payload, Map<String, String> params) {
+    Map<String, String> allParams = new HashMap<>(refreshParam);
+    allParams.putAll(params);
+    Response response = performRequest("POST", uri, payload, allParams);
+    refresher.written();
+    return response;
+  }
+
+  /**
+   * Refreshes the index if any write is not visible to searches yet, so that operations which
+   * must see all documents, like deleting by query or scanning, do not miss recent writes.
+   */
+  protected void refreshAllIfNeeded() {
+    refresher.refreshAllIfNeeded();
+  }
+
+  private void refresh() {
+    Response response = performRequest(HttpPost.METHOD_NAME, getURI(REFRESH));
+    int statusCode = response.getStatusLine().getStatusCode();
+    if (statusCode != HttpStatus.SC_OK) {
+      throw new StorageException(
+          String.format("Failed to refresh index %s: %s", indexName, statusCode));
+    }
+  }
+
+  /**
+   * Streams all documents matching the predicate to the consumer, reading the index with a sliced
+   * scroll whose slices are processed concurrently.
+   *
+   * <p>The consumer is called concurrently from the threads shared by all indexes, see {@link
+   * ElasticExecutor}, one slice per thread. The fields in {@code opts} must include the fields
+   * required by {@link #documentMapper(Set)}, and {@code opts.pageSize()} is used as the number of
+   * documents fetched per slice and request.
+   */
+  void scan(Predicate<V> p, QueryOptions opts, int slices, Consumer<? super V> consumer)
+      throws QueryParseException {
+    checkArgument(slices > 0, "slices must be positive: %s", slices);
+    refresher.refreshAllIfNeeded();
+    QueryBuilder qb = QueryBuilders.constantScoreQuery(queryBuilder.toQueryBuilder(p));
+    Function<JsonObject, V> mapper = documentMapper(opts.fields());
+    scan.scan(
+        slices,
+        new ElasticScan.Scroll() {
+          @Override
+          public JsonObject open(int slice) {
+            SearchSourceBuilder searchSource =
+                new SearchSourceBuilder(client.adapter())
+                    .query(qb)
+                    .size(opts.pageSize())
+                    .fields(Lists.newArrayList(opts.fields()))
+                    .trackTotalHits(false);
+            if (slices > 1) {
+              searchSource.slice(slice, slices);
+            }
+            return performSearchRequest(
+                getURI(SEARCH),
+                getSearch(searchSource, getSortArray(DOC_SORT)),
+                ImmutableMap.of("scroll", SCROLL_KEEP_ALIVE));
+          }
+
+          @Override
+          public JsonObject next(String scrollId) {
+            JsonObject scroll = new JsonObject();
+            scroll.addProperty("scroll", SCROLL_KEEP_ALIVE);
+            scroll.addProperty("scroll_id", scrollId);
+            return performSearchRequest(SCROLL, scroll.toString(), Collections.emptyMap());
+          }
+
+          @Override
+          public void clear(String scrollId) {
+            JsonObject clearScroll = new JsonObject();
+            clearScroll.addProperty("scroll_id", scrollId);
+            performRequest("DELETE", SCROLL, clearScroll.toString());
+          }
+        },
+        hits -> fromDocuments(getHits(hits), mapper).forEach(consumer));
+  }
+
+  /** Returns the documents that exist for the given ids, in the order of the ids. */
+  private List<JsonObject> multiGet(Collection<String> ids, Set<String> fields) {
+    JsonArray idArray = new JsonArray();
+    ids.forEach(idArray::add);
+    JsonObject request = new JsonObject();
+    request.add("ids", idArray);
+    Map<String, String> params =
+        fields.isEmpty()
+            ? Collections.emptyMap()
+            : ImmutableMap.of(client.adapter().searchFilteringName(), String.join(",", fields));
+    JsonObject response = performSearchRequest(getURI(MULTI_GET), request.toString(), params);
+    List<JsonObject> docs = new ArrayList<>(ids.size());
+    for (JsonElement doc : response.getAsJsonArray("docs")) {
+      JsonObject d = doc.getAsJsonObject();
+      JsonElement found = d.get("found");
+      if (found != null && found.getAsBoolean()) {
+        docs.add(d);
+      }
+    }
+    return docs;
+  }
+
+  private JsonObject search(String payload) {
+    return performSearchRequest(getURI(SEARCH), payload, Collections.emptyMap());
+  }
+
+  private JsonObject performSearchRequest(
+      String uri, String payload, Map<String, String> params) {
+    Response response = performRequest(HttpPost.METHOD_NAME, uri, payload, params);
+    StatusLine statusLine = response.getStatusLine();
+    if (statusLine.getStatusCode() != HttpStatus.SC_OK) {
+      throw new StorageException(
+          String.format(
+              "Search request on index %s failed: %s", indexName, statusLine.getReasonPhrase()));
+    }
+    try {
+      return parseSearchContent(response);
+    } catch (IOException e) {
+      throw new StorageException(e);
+    }
   }
 
   private String concatJsonString(String target, String addition) {
@@ -382,6 +750,19 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
 
   private Response performRequest(
       String method, String uri, @Nullable Object payload, Map<String, String> params) {
+    return performRequest(method, uri, payload, params, false);
+  }
+
+  /**
+   * Performs the request. If {@code hedge} is set, the request may be sent a second time when it
+   * is slow, so it must be a read-only request.
+   */
+  private Response performRequest(
+      String method,
+      String uri,
+      @Nullable Object payload,
+      Map<String, String> params,
+      boolean hedge) {
     Request request = new Request(method, uri.startsWith("/") ? uri : "/" + uri);
     if (payload != null) {
       String payloadStr = payload instanceof String ? (String) payload : payload.toString();
@@ -399,7 +780,7 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
                     String.format(
                         "method:%s uri:%s payload:%s params:%s", method, uri, payload, params))
                 .build())) {
-      return client.get().performRequest(request);
+      return hedge ? hedgedSearch.perform(request) : client.get().performRequest(request);
     } catch (IOException e) {
       throw new StorageException(e);
     }
@@ -408,81 +789,278 @@ abstract class AbstractElasticIndex<K, V> implements Index<K, V> {
   protected class ElasticQuerySource implements DataSource<V> {
     private final QueryOptions opts;
     private final Predicate<V> predicate;
+    private final SearchSourceBuilder searchSource;
     private final String search;
+    private final Function<JsonObject, V> documentMapper;
+    private final ImmutableMap<String, String> searchParams;
+    @Nullable private final SortedSet<String> lookupIds;
+    @Nullable private final String fingerprint;
+    @Nullable private final JsonArray searchAfter;
+    private final int fetchSize;
+    private final boolean expensive;
+    private final long timeout;
 
     ElasticQuerySource(Predicate<V> p, QueryOptions opts, JsonArray sortArray)
         throws QueryParseException {
       this.opts = opts;
       this.predicate = p;
-      QueryBuilder qb = queryBuilder.toQueryBuilder(p);
+      this.documentMapper = documentMapper(opts.fields());
+      this.lookupIds = getLookupIds(p, opts);
+      ImmutableMap.Builder<String, String> params = ImmutableMap.builder();
+      String preference = searchPreference.get(p);
+      if (preference != null) {
+        params.put(PREFERENCE, preference);
+      }
+      String routing = getRouting(p);
+      if (routing != null) {
+        params.put(ROUTING, routing);
+      }
+      this.searchParams = params.build();
+      // Results are always sorted, so run the query in filter context and skip scoring.
+      QueryBuilder qb = QueryBuilders.constantScoreQuery(queryBuilder.toQueryBuilder(p));
       SearchSourceBuilder searchSource =
           new SearchSourceBuilder(client.adapter())
               .query(qb)
               .size(opts.pageSize())
-              .fields(Lists.newArrayList(opts.fields()))
-              .trackTotalHits(false);
+              .trackTotalHits(false)
+              .trackScores(false);
+      this.expensive = queryBuilder.isExpensive(p);
+      this.timeout = expensive ? expensiveSearchTimeout : searchTimeout;
+      if (timeout > 0) {
+        searchSource.timeout(timeout + "ms");
+      }
+      if (terminateAfter > 0) {
+        searchSource.terminateAfter(terminateAfter);
+      }
+      List<String> fields = Lists.newArrayList(opts.fields());
+      searchSource =
+          !fields.isEmpty() && fields.stream().allMatch(AbstractElasticIndex.this::isDocValueField)
+              ? searchSource.docValueFields(fields)
+              : searchSource.fields(fields);
+      if (offsetCursors.isEnabled() || overFetch.isEnabled()) {
+        // The page size may grow from page to page, so it is not part of the fingerprint.
+        fingerprint = getSearch(searchSource.size(-1), sortArray) + searchParams;
+      } else {
+        fingerprint = null;
+      }
+      JsonArray searchAfter = (JsonArray) opts.searchAfter();
+      if (searchAfter == null && fingerprint != null) {
+        searchAfter = offsetCursors.get(fingerprint, opts.start());
+      }
+      this.searchAfter = searchAfter;
+      this.fetchSize = overFetch.fetchSize(fingerprint, opts.pageSize());
+      searchSource.size(fetchSize);
       searchSource =
-          opts.searchAfter() != null
-              ? searchSource.searchAfter((JsonArray) opts.searchAfter())
+          searchAfter != null
+              ? searchSource.searchAfter(searchAfter)
               : searchSource.from(opts.start());
-      search = getSearch(searchSource, sortArray);
+      this.searchSource = searchSource;
+      this.search = getSearch(searchSource, sortArray);
+    }
+
+    @Nullable
+    private SortedSet<String> getLookupIds(Predicate<V> p, QueryOptions opts) {
+      String idField = getIdField();
+      if (idField == null || opts.start() != 0 || opts.searchAfter() != null) {
+        return null;
+      }
+      SortedSet<String> ids = queryBuilder.lookupValues(p, idField);
+      if (ids == null
+          || ids.isEmpty()
+          || ids.size() > opts.pageSize()
+          || (ids.size() > 1 && !isSortedById())) {
+        return null;
+      }
+      return ids;
     }
 
     @Override
     public int getCardinality() {
-      if (predicate instanceof HasCardinality) {
-        return ((HasCardinality) predicate).getCardinality();
+      if (lookupIds != null) {
+        return lookupIds.size();
       }
-      return 10;
+      return cardinalityEstimator.estimate(predicate);
     }
 
     @Override
     public ResultSet<V> read() {
-      return readImpl(doc -> AbstractElasticIndex.this.fromDocument(doc, opts.fields()));
+      return readImpl(
+          docs -> {
+            List<V> results = fromDocuments(docs, documentMapper);
+            if (lookupIds == null) {
+              prefetch(results, opts.fields());
+            }
+            return results;
+          });
     }
 
     @Override
     public ResultSet<FieldBundle> readRaw() {
-      return readImpl(AbstractElasticIndex.this::toFieldBundle);
+      return readImpl(docs -> Lists.transform(docs, AbstractElasticIndex.this::toFieldBundle));
+    }
+
+    private <T> ResultSet<T> readImpl(Function<List<JsonObject>, List<T>> pageMapper) {
+      if (lookupIds != null) {
+        List<JsonObject> docs = multiGet(lookupIds, opts.fields());
+        return new ListResultSet<>(ImmutableList.copyOf(pageMapper.apply(docs)));
+      }
+      List<JsonObject> allHits;
+      boolean exhausted;
+      // Hits fetched in excess or prefetched before pending writes are refreshed may be outdated,
+      // so search again instead of serving them.
+      boolean refreshed = refresher.refreshIfNeeded();
+      ElasticOverFetch.Page page =
+          refreshed
+              ? null
+              : overFetch.take(fingerprint, searchAfter, opts.start(), opts.pageSize());
+      int start;
+      if (page != null) {
+        allHits = page.hits;
+        exhausted = page.exhausted;
+        start = page.start;
+      } else {
+        allHits = searchHits(refreshed);
+        if (allHits == null) {
+          return new ListResultSet<>(ImmutableList.of());
+        }
+        exhausted = allHits.size() < fetchSize;
+        start = opts.start();
+      }
+      if (fingerprint != null) {
+        offsetCursors.put(fingerprint, start, allHits);
+      }
+      List<JsonObject> hits =
+          allHits.size() > opts.pageSize() ? allHits.subList(0, opts.pageSize()) : allHits;
+      JsonArray lastSortValues = null;
+      if (!hits.isEmpty()) {
+        JsonObject hit = hits.get(hits.size() - 1);
+        if (hit.get("sort") != null) {
+          lastSortValues = hit.getAsJsonArray("sort");
+        }
+      }
+      if (lastSortValues != null && hits.size() == opts.pageSize()) {
+        overFetch.put(
+            fingerprint,
+            lastSortValues,
+            opts.start() + hits.size(),
+            allHits.subList(hits.size(), allHits.size()),
+            exhausted);
+      }
+      ImmutableList<T> results = ImmutableList.copyOf(pageMapper.apply(hits));
+      JsonArray finalSearchAfter = lastSortValues;
+      return new ListResultSet<>(results) {
+        @Override
+        public Object searchAfter() {
+          return finalSearchAfter;
+        }
+      };
     }
 
-    private <T> ResultSet<T> readImpl(Function<JsonObject, T> mapper) {
+    /**
+     * Returns the hits of the search, or null if the search failed.
+     *
+     * @param refreshed whether pending writes were just refreshed, so that a prefetched response
+     *     may be outdated
+     */
+    @Nullable
+    private List<JsonObject> searchHits(boolean refreshed) {
+      long start = System.nanoTime();
+      JsonObject response = refreshed ? null : pagePrefetcher.take(search, searchParams);
+      if (response == null) {
+        response = expensive ? executeExpensiveSearch() : executeSearch();
+      }
+      if (response == null) {
+        return null;
+      }
+      slowQueryLog.record(predicate, search, searchParams, response, System.nanoTime() - start);
+      checkPartialResults(response);
+      JsonObject obj = response.getAsJsonObject("hits");
+      if (obj.get("hits") == null) {
+        return null;
+      }
+      List<JsonObject> hits = getHits(obj.getAsJsonArray("hits"));
+      if (hits.isEmpty() || hits.get(hits.size() - 1).get("sort") == null) {
+        return hits;
+      }
+      if (hits.size() == fetchSize
+          && fetchSize == opts.pageSize()
+          && pagePrefetcher.isEnabled()
+          && !expensive
+          && !isTrue(response, "timed_out")) {
+        // Search for the next page while the caller processes this one. Expensive searches are
+        // not prefetched, as the prefetch would bypass their concurrency limit.
+        pagePrefetcher.prefetch(
+            getURI(SEARCH),
+            ElasticPagePrefetcher.nextPageSearch(
+                searchSource, hits.get(hits.size() - 1).getAsJsonArray("sort")),
+            searchParams);
+      }
+      return hits;
+    }
+
+    private void checkPartialResults(JsonObject response) {
+      if (isTrue(response, "timed_out")) {
+        logger.atWarning().log(
+            "Search on index %s timed out after %d ms, returning partial results: %s",
+            indexName, timeout, predicate);
+        metrics.searchTimedOut.increment(indexNameRaw);
+      }
+      if (isTrue(response, "terminated_early")) {
+        logger.atFine().log(
+            "Search on index %s terminated after %d hits per shard: %s",
+            indexName, terminateAfter, predicate);
+        metrics.searchTerminatedEarly.increment(indexNameRaw);
+      }
+    }
+
+    /**
+     * Like {@link #executeSearch()}, but limits the number of concurrent searches for expensive
+     * regular expressions.
+     */
+    @Nullable
+    private JsonObject executeExpensiveSearch() {
+      try {
+        if (!expensiveSearches.tryAcquire(expensiveSearchTimeout, TimeUnit.MILLISECONDS)) {
+          throw new StorageException(
+              String.format(
+                  "Too many searches for expensive regular expressions on index %s: %s",
+                  indexName, predicate));
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new StorageException("Interrupted while waiting to search index " + indexName, e);
+      }
+      try {
+        return executeSearch();
+      } finally {
+        expensiveSearches.release();
+      }
+    }
+
+    /** Returns the search response, or null if the search failed. */
+    @Nullable
+    private JsonObject executeSearch() {
+      if (multiSearch.isEnabled()) {
+        JsonObject header = new JsonObject();
+        searchParams.forEach(header::addProperty);
+        JsonObject response = multiSearch.search(header, search);
+        if (response.has("error")) {
+          logger.atSevere().log("%s", response.get("error"));
+          return null;
+        }
+        return response;
+      }
+
       try {
         String uri = getURI(SEARCH);
-        JsonArray searchAfter = null;
         Response response =
-            performRequest(HttpPost.METHOD_NAME, uri, search, Collections.emptyMap());
+            performRequest(HttpPost.METHOD_NAME, uri, search, searchParams, !expensive);
         StatusLine statusLine = response.getStatusLine();
         if (statusLine.getStatusCode() == HttpStatus.SC_OK) {
-          String content = getContent(response);
-          JsonObject obj =
-              JsonParser.parseString(content).getAsJsonObject().getAsJsonObject("hits");
-          if (obj.get("hits") != null) {
-            JsonArray json = obj.getAsJsonArray("hits");
-            ImmutableList.Builder<T> results = ImmutableList.builderWithExpectedSize(json.size());
-            JsonObject hit = null;
-            for (int i = 0; i < json.size(); i++) {
-              hit = json.get(i).getAsJsonObject();
-              T mapperResult = mapper.apply(hit);
-              if (mapperResult != null) {
-                results.add(mapperResult);
-              }
-            }
-            if (hit != null && hit.get("sort") != null) {
-              searchAfter = hit.getAsJsonArray("sort");
-            }
-            JsonArray finalSearchAfter = searchAfter;
-            return new ListResultSet<>(results.build()) {
-              @Override
-              public Object searchAfter() {
-                return finalSearchAfter;
-              }
-            };
-          }
-        } else {
-          logger.atSevere().log("%s", statusLine.getReasonPhrase());
+          return parseSearchContent(response);
         }
-        return new ListResultSet<>(ImmutableList.of());
+        logger.atSevere().log("%s", statusLine.getReasonPhrase());
+        return null;
       } catch (IOException e) {
         throw new StorageException(e);
       }
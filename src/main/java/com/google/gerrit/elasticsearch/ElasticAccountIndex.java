@@ -14,7 +14,11 @@
 
 package com.google.gerrit.elasticsearch;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.elasticsearch.ElasticMapping.Mapping;
 import com.google.gerrit.elasticsearch.bulk.BulkRequest;
 import com.google.gerrit.elasticsearch.bulk.IndexRequest;
@@ -39,7 +43,11 @@ import com.google.gson.JsonObject;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.assistedinject.Assisted;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import org.apache.http.HttpStatus;
 import org.elasticsearch.client.Response;
 
@@ -48,8 +56,9 @@ public class ElasticAccountIndex extends AbstractElasticIndex<Account.Id, Accoun
   static class AccountMapping {
     final Mapping accounts;
 
-    AccountMapping(Schema<AccountState> schema, ElasticQueryAdapter adapter) {
-      this.accounts = ElasticMapping.createMapping(schema, adapter);
+    AccountMapping(
+        Schema<AccountState> schema, ElasticQueryAdapter adapter, ElasticConfiguration cfg) {
+      this.accounts = ElasticMapping.createMapping(schema, adapter, cfg);
     }
   }
 
@@ -62,14 +71,29 @@ public class ElasticAccountIndex extends AbstractElasticIndex<Account.Id, Accoun
   @Inject
   ElasticAccountIndex(
       ElasticConfiguration cfg,
+      ElasticMetrics metrics,
+      ElasticSearchPreference searchPreference,
+      ElasticCurrentUser currentUser,
+      ElasticExecutor executor,
       SitePaths sitePaths,
       Provider<AccountCache> accountCache,
       ElasticRestClientProvider client,
       AutoFlush autoFlush,
       @Assisted Schema<AccountState> schema) {
-    super(cfg, sitePaths, schema, client, ACCOUNTS, autoFlush, AccountIndex.ENTITY_TO_KEY);
+    super(
+        cfg,
+        metrics,
+        searchPreference,
+        currentUser,
+        executor,
+        sitePaths,
+        schema,
+        client,
+        ACCOUNTS,
+        autoFlush,
+        AccountIndex.ENTITY_TO_KEY);
     this.accountCache = accountCache;
-    this.mapping = new AccountMapping(schema, client.adapter());
+    this.mapping = new AccountMapping(schema, client.adapter(), cfg);
     this.schema = schema;
   }
 
@@ -103,6 +127,20 @@ public class ElasticAccountIndex extends AbstractElasticIndex<Account.Id, Accoun
         p, opts.filterFields(o -> IndexUtils.accountFields(o, useLegacyNumericFields)), sortArray);
   }
 
+  @Override
+  @Nullable
+  protected String getIdField() {
+    // Legacy numeric ids are sorted as numbers, not as strings.
+    return schema.hasField(AccountField.ID_FIELD_SPEC)
+        ? null
+        : AccountField.ID_STR_FIELD_SPEC.getName();
+  }
+
+  @Override
+  protected boolean isSortedById() {
+    return true;
+  }
+
   @Override
   protected String getDeleteActions(Account.Id a) {
     return getDeleteRequest(a);
@@ -120,25 +158,42 @@ public class ElasticAccountIndex extends AbstractElasticIndex<Account.Id, Accoun
 
   @Override
   protected AccountState fromDocument(JsonObject json, Set<String> fields) {
-    JsonElement source = json.get("_source");
-    if (source == null) {
-      source = json.getAsJsonObject().get("fields");
-    }
-
-    Account.Id id =
-        Account.id(
-            source
-                .getAsJsonObject()
-                .get(
-                    schema.hasField(AccountField.ID_FIELD_SPEC)
-                        ? AccountField.ID_FIELD_SPEC.getName()
-                        : AccountField.ID_STR_FIELD_SPEC.getName())
-                .getAsInt());
     // Use the AccountCache rather than depending on any stored fields in the document (of which
     // there shouldn't be any). The most expensive part to compute anyway is the effective group
     // IDs, and we don't have a good way to reindex when those change.
     // If the account doesn't exist return an empty AccountState to represent the missing account
     // to account the fact that the account exists in the index.
-    return accountCache.get().getEvenIfMissing(id);
+    return accountCache.get().getEvenIfMissing(getAccountId(json));
+  }
+
+  @Override
+  protected List<AccountState> fromDocuments(
+      List<JsonObject> docs, Function<JsonObject, AccountState> mapper) {
+    ImmutableList<Account.Id> ids =
+        docs.stream().map(this::getAccountId).collect(toImmutableList());
+    // Load all accounts of the page at once, so that cache misses are loaded in one batch.
+    Map<Account.Id, AccountState> accounts = accountCache.get().get(ImmutableSet.copyOf(ids));
+    List<AccountState> result = new ArrayList<>(ids.size());
+    for (Account.Id id : ids) {
+      AccountState account = accounts.get(id);
+      result.add(account != null ? account : accountCache.get().getEvenIfMissing(id));
+    }
+    return result;
+  }
+
+  private Account.Id getAccountId(JsonObject json) {
+    JsonElement source = json.get("_source");
+    if (source == null) {
+      source = json.getAsJsonObject().get("fields");
+    }
+
+    return Account.id(
+        source
+            .getAsJsonObject()
+            .get(
+                schema.hasField(AccountField.ID_FIELD_SPEC)
+                    ? AccountField.ID_FIELD_SPEC.getName()
+                    : AccountField.ID_STR_FIELD_SPEC.getName())
+            .getAsInt());
   }
 }
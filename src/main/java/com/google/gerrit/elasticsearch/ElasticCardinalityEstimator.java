@@ -0,0 +1,223 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.primitives.Ints;
+import com.google.gerrit.index.FieldType;
+import com.google.gerrit.index.Schema;
+import com.google.gerrit.index.query.AndPredicate;
+import com.google.gerrit.index.query.HasCardinality;
+import com.google.gerrit.index.query.IndexPredicate;
+import com.google.gerrit.index.query.NotPredicate;
+import com.google.gerrit.index.query.OrPredicate;
+import com.google.gerrit.index.query.Predicate;
+import com.google.gerrit.index.query.RegexPredicate;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Estimates the number of documents matching a predicate from periodically refreshed term
+ * statistics of the fields configured in {@code elasticsearch.cardinalityField}.
+ */
+class ElasticCardinalityEstimator {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  static final int DEFAULT_CARDINALITY = 10;
+
+  private static final int MAX_TERMS = 1000;
+  private static final long UNKNOWN = -1;
+
+  private final ImmutableSet<String> fields;
+  private final Function<String, JsonObject> search;
+  private final Executor executor;
+  private final LoadingCache<String, FieldStatistics> statistics;
+
+  /**
+   * @param search runs a search request and returns its response
+   * @param executor runs the loads of the term statistics, so that estimating never waits for them
+   */
+  ElasticCardinalityEstimator(
+      ElasticConfiguration cfg,
+      Schema<?> schema,
+      Function<String, JsonObject> search,
+      Executor executor) {
+    this(cfg, schema, search, executor, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  ElasticCardinalityEstimator(
+      ElasticConfiguration cfg,
+      Schema<?> schema,
+      Function<String, JsonObject> search,
+      Executor executor,
+      Ticker ticker) {
+    this.fields =
+        cfg.cardinalityFields.stream()
+            .filter(schema::hasField)
+            .filter(f -> isTermField(schema.getSchemaField(f).getType()))
+            .collect(toImmutableSet());
+    this.search = search;
+    this.executor = executor;
+    this.statistics =
+        CacheBuilder.newBuilder()
+            .ticker(ticker)
+            .refreshAfterWrite(cfg.cardinalityRefreshInterval, MILLISECONDS)
+            .build(CacheLoader.asyncReloading(CacheLoader.from(this::loadLogged), executor));
+  }
+
+  <T> int estimate(Predicate<T> p) {
+    if (p instanceof HasCardinality) {
+      return ((HasCardinality) p).getCardinality();
+    }
+    if (fields.isEmpty()) {
+      return DEFAULT_CARDINALITY;
+    }
+    long estimate = estimateImpl(p);
+    return estimate == UNKNOWN ? DEFAULT_CARDINALITY : Ints.saturatedCast(estimate);
+  }
+
+  private <T> long estimateImpl(Predicate<T> p) {
+    if (p instanceof HasCardinality) {
+      return ((HasCardinality) p).getCardinality();
+    } else if (p instanceof AndPredicate) {
+      long min = UNKNOWN;
+      for (Predicate<T> c : p.getChildren()) {
+        long estimate = estimateImpl(c);
+        if (estimate != UNKNOWN && (min == UNKNOWN || estimate < min)) {
+          min = estimate;
+        }
+      }
+      return min;
+    } else if (p instanceof OrPredicate) {
+      long sum = 0;
+      for (Predicate<T> c : p.getChildren()) {
+        long estimate = estimateImpl(c);
+        if (estimate == UNKNOWN) {
+          return UNKNOWN;
+        }
+        sum += estimate;
+      }
+      return sum;
+    } else if (p instanceof NotPredicate && isTrackedTerm(p.getChild(0))) {
+      IndexPredicate<T> term = (IndexPredicate<T>) p.getChild(0);
+      FieldStatistics stats = statistics(term.getField().getName());
+      long count = stats.count(term.getValue());
+      return stats.total == UNKNOWN || count == UNKNOWN ? UNKNOWN : stats.total - count;
+    } else if (isTrackedTerm(p)) {
+      IndexPredicate<T> term = (IndexPredicate<T>) p;
+      return statistics(term.getField().getName()).count(term.getValue());
+    }
+    return UNKNOWN;
+  }
+
+  /**
+   * Returns the statistics of the field, or unknown statistics while they are loaded for the first
+   * time. Once loaded, the statistics are reloaded in the background when they get old, while the
+   * previous ones are still used.
+   */
+  private FieldStatistics statistics(String field) {
+    FieldStatistics stats = statistics.getIfPresent(field);
+    if (stats == null) {
+      // Concurrent loads of the same field are merged by the cache.
+      executor.execute(() -> statistics.refresh(field));
+      return FieldStatistics.NONE;
+    }
+    return stats;
+  }
+
+  private <T> boolean isTrackedTerm(Predicate<T> p) {
+    return p instanceof IndexPredicate
+        && !(p instanceof RegexPredicate)
+        && fields.contains(((IndexPredicate<T>) p).getField().getName());
+  }
+
+  /**
+   * Loads the statistics of the field, logging failures. A failure is passed on to the cache, which
+   * then keeps the previous statistics, or retries a first load on the next estimate.
+   */
+  private FieldStatistics loadLogged(String field) {
+    try {
+      return load(field);
+    } catch (RuntimeException e) {
+      logger.atWarning().withCause(e).log("Failed to load term statistics of field %s", field);
+      throw e;
+    }
+  }
+
+  private FieldStatistics load(String field) {
+    JsonObject terms = new JsonObject();
+    terms.addProperty("field", field);
+    terms.addProperty("size", MAX_TERMS);
+    JsonObject aggregation = new JsonObject();
+    aggregation.add("terms", terms);
+    JsonObject aggregations = new JsonObject();
+    aggregations.add(field, aggregation);
+    JsonObject request = new JsonObject();
+    request.addProperty("size", 0);
+    request.addProperty("track_total_hits", true);
+    request.add("aggs", aggregations);
+
+    JsonObject response = search.apply(request.toString());
+    long total = response.getAsJsonObject("hits").getAsJsonObject("total").get("value").getAsLong();
+    JsonObject result = response.getAsJsonObject("aggregations").getAsJsonObject(field);
+    ImmutableMap.Builder<String, Long> counts = ImmutableMap.builder();
+    for (JsonElement bucket : result.getAsJsonArray("buckets")) {
+      JsonObject b = bucket.getAsJsonObject();
+      counts.put(b.get("key").getAsString(), b.get("doc_count").getAsLong());
+    }
+    boolean complete = result.get("sum_other_doc_count").getAsLong() == 0;
+    return new FieldStatistics(total, counts.build(), complete);
+  }
+
+  private static boolean isTermField(FieldType<?> type) {
+    return type == FieldType.EXACT || type == FieldType.INTEGER;
+  }
+
+  private static class FieldStatistics {
+    static final FieldStatistics NONE =
+        new FieldStatistics(ElasticCardinalityEstimator.UNKNOWN, ImmutableMap.of(), false);
+
+    final long total;
+    final ImmutableMap<String, Long> counts;
+    final boolean complete;
+
+    FieldStatistics(long total, ImmutableMap<String, Long> counts, boolean complete) {
+      this.total = total;
+      this.counts = counts;
+      this.complete = complete;
+    }
+
+    long count(String term) {
+      Long count = counts.get(term);
+      if (count != null) {
+        return count;
+      }
+      return complete ? 0 : UNKNOWN;
+    }
+  }
+}
@@ -0,0 +1,103 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.server.index.change.ChangeField;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Loads the parts of {@link ChangeData} that are needed by almost every user-facing change query,
+ * for all changes of a result page in parallel.
+ *
+ * <p>Only queries on behalf of a user that request the whole change are prefetched. Internal
+ * queries, e.g. lookups of change ids, rarely use the prefetched data, and would only pay for the
+ * additional loads.
+ *
+ * <p>{@code ChangeData} is not thread-safe, so each change is loaded by a single thread and the
+ * caller waits until all changes of the page are loaded before it uses them. This trades the
+ * latency of the first result for parallelism: the data is loaded also for changes that are later
+ * dropped because they are not visible to the user.
+ */
+@Singleton
+class ElasticChangeDataPrefetcher {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final String CHANGE_FIELD = ChangeField.CHANGE_SPEC.getName();
+
+  @Nullable private final ListeningExecutorService executor;
+  private final ElasticCurrentUser currentUser;
+
+  @Inject
+  ElasticChangeDataPrefetcher(
+      ElasticConfiguration cfg, ElasticExecutor executor, ElasticCurrentUser currentUser) {
+    this(cfg.prefetchChangeData ? executor.get() : null, currentUser);
+  }
+
+  @VisibleForTesting
+  ElasticChangeDataPrefetcher(
+      @Nullable ListeningExecutorService executor, ElasticCurrentUser currentUser) {
+    this.executor = executor;
+    this.currentUser = currentUser;
+  }
+
+  /**
+   * Loads the data of the changes of a result page, if the query needs it.
+   *
+   * @param changes the changes of the page
+   * @param fields the fields requested by the query
+   */
+  void prefetch(List<ChangeData> changes, Set<String> fields) {
+    if (executor == null
+        || changes.size() < 2
+        || !fields.contains(CHANGE_FIELD)
+        || !currentUser.isUserFacing()) {
+      return;
+    }
+    List<ListenableFuture<?>> loads = new ArrayList<>(changes.size());
+    for (ChangeData cd : changes) {
+      loads.add(executor.submit(() -> load(cd)));
+    }
+    try {
+      // Wait even if interrupted, the changes must not be used while they are still loading.
+      Uninterruptibles.getUninterruptibly(Futures.successfulAsList(loads));
+    } catch (ExecutionException e) {
+      // Not thrown by successfulAsList, data that failed to load is loaded again on use.
+    }
+  }
+
+  private static void load(ChangeData cd) {
+    try {
+      cd.notes();
+      cd.currentApprovals();
+      cd.reviewers();
+    } catch (RuntimeException e) {
+      // The data is loaded again on use, which reports the error to the caller.
+      logger.atFine().withCause(e).log("Failed to prefetch change %s", cd.getId());
+    }
+  }
+}
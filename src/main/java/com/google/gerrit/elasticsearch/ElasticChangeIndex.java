@@ -14,14 +14,21 @@
 
 package com.google.gerrit.elasticsearch;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.util.Objects.requireNonNull;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.elasticsearch.ElasticMapping.Mapping;
 import com.google.gerrit.elasticsearch.builders.QueryBuilder;
+import com.google.gerrit.elasticsearch.builders.QueryBuilders;
 import com.google.gerrit.elasticsearch.builders.SearchSourceBuilder;
 import com.google.gerrit.elasticsearch.bulk.BulkRequest;
+import com.google.gerrit.elasticsearch.bulk.DeleteRequest;
 import com.google.gerrit.elasticsearch.bulk.IndexRequest;
 import com.google.gerrit.elasticsearch.bulk.UpdateRequest;
 import com.google.gerrit.entities.Change;
@@ -49,7 +56,11 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import org.apache.http.HttpStatus;
 import org.eclipse.jgit.lib.Config;
 import org.elasticsearch.client.Response;
@@ -64,44 +75,92 @@ class ElasticChangeIndex extends AbstractElasticIndex<Change.Id, ChangeData>
     final Mapping openChanges;
     final Mapping closedChanges;
 
-    ChangeMapping(Schema<ChangeData> schema, ElasticQueryAdapter adapter) {
-      Mapping mapping = ElasticMapping.createMapping(schema, adapter);
+    ChangeMapping(
+        Schema<ChangeData> schema, ElasticQueryAdapter adapter, ElasticConfiguration cfg) {
+      Mapping mapping = ElasticMapping.createMapping(schema, adapter, cfg);
+      if (cfg.routeChangesByProject) {
+        mapping.meta.put(META_ROUTING, ROUTING_BY_PROJECT);
+      }
       this.changes = mapping;
       this.openChanges = mapping;
       this.closedChanges = mapping;
     }
   }
 
+  /**
+   * Key of the mapping {@code _meta} that records how change documents are routed to shards.
+   * Documents written with one routing cannot be found with the other, so the index is accessed
+   * with the routing it was created with rather than the configured one.
+   */
+  static final String META_ROUTING = "routing";
+
+  static final String ROUTING_BY_PROJECT = "project";
+
+  /** Must match {@link #getSortArray()}, otherwise searches cannot terminate early. */
+  @VisibleForTesting
+  static final ImmutableMap<String, String> INDEX_SORT =
+      ImmutableMap.of(
+          ChangeField.UPDATED_SPEC.getName(),
+          DESC_SORT_ORDER,
+          ChangeField.MERGED_ON_SPEC.getName(),
+          DESC_SORT_ORDER,
+          ChangeField.NUMERIC_ID_STR_SPEC.getName(),
+          DESC_SORT_ORDER);
+
   private static final String CHANGES = "changes";
+  private static final String ID_FIELD = "_id";
 
   private final ChangeMapping mapping;
   private final ChangeData.Factory changeDataFactory;
+  private final ElasticChangeDataPrefetcher prefetcher;
   private final Schema<ChangeData> schema;
   private final ImmutableSet<String> skipFields;
+  private final boolean routeChangesByProject;
+  private final boolean sortIndex;
 
   @Inject
   ElasticChangeIndex(
       ElasticConfiguration cfg,
+      ElasticMetrics metrics,
+      ElasticSearchPreference searchPreference,
+      ElasticCurrentUser currentUser,
+      ElasticExecutor executor,
       ChangeData.Factory changeDataFactory,
+      ElasticChangeDataPrefetcher prefetcher,
       SitePaths sitePaths,
       ElasticRestClientProvider clientBuilder,
       @GerritServerConfig Config gerritConfig,
       AutoFlush autoFlush,
       @Assisted Schema<ChangeData> schema) {
-    super(cfg, sitePaths, schema, clientBuilder, CHANGES, autoFlush, ChangeIndex.ENTITY_TO_KEY);
+    super(
+        cfg,
+        metrics,
+        searchPreference,
+        currentUser,
+        executor,
+        sitePaths,
+        schema,
+        clientBuilder,
+        CHANGES,
+        autoFlush,
+        ChangeIndex.ENTITY_TO_KEY);
     this.changeDataFactory = changeDataFactory;
+    this.prefetcher = prefetcher;
     this.schema = schema;
-    this.mapping = new ChangeMapping(schema, client.adapter());
+    this.mapping = new ChangeMapping(schema, client.adapter(), cfg);
     this.skipFields =
         MergeabilityComputationBehavior.fromConfig(gerritConfig).includeInIndex()
             ? ImmutableSet.of()
             : ImmutableSet.of(ChangeField.MERGEABLE_SPEC.getName());
+    this.routeChangesByProject = cfg.routeChangesByProject;
+    this.sortIndex = cfg.sortChangeIndex;
   }
 
   @Override
   public void replace(ChangeData cd) {
     BulkRequest bulk =
-        new IndexRequest(getId(cd), indexName).add(new UpdateRequest<>(schema, cd, skipFields));
+        new IndexRequest(getId(cd), indexName, getRouting(cd.project()))
+            .add(new UpdateRequest<>(schema, cd, skipFields));
 
     if (logger.atFine().isEnabled()) {
       String metaRevision = null;
@@ -124,6 +183,37 @@ class ElasticChangeIndex extends AbstractElasticIndex<Change.Id, ChangeData>
     }
   }
 
+  @Override
+  public void deleteByValue(ChangeData cd) {
+    if (!routeByProject()) {
+      super.deleteByValue(cd);
+      return;
+    }
+    Response response =
+        postRequestWithRefreshParam(
+            getURI(BULK), new DeleteRequest(getId(cd), indexName, getRouting(cd.project())));
+    int statusCode = response.getStatusLine().getStatusCode();
+    if (statusCode != HttpStatus.SC_OK) {
+      throw new StorageException(
+          String.format(
+              "Failed to delete change %s from index %s: %s", cd.getId(), indexName, statusCode));
+    }
+  }
+
+  @Override
+  public void delete(Change.Id id) {
+    if (!routeByProject()) {
+      super.delete(id);
+      return;
+    }
+    // Without the project the shard of the change is unknown, so delete it from all shards. The
+    // project cannot be resolved from the change notes either, since they are already gone when a
+    // change is deleted. Deleting by query refreshes the index first if writes are pending, so
+    // that documents written since the last refresh are deleted as well.
+    deleteByQuery(
+        QueryBuilders.termQuery(ID_FIELD, id.toString()), null, String.format("change %s", id));
+  }
+
   @Override
   public DataSource<ChangeData> getSource(Predicate<ChangeData> p, QueryOptions opts)
       throws QueryParseException {
@@ -131,7 +221,15 @@ class ElasticChangeIndex extends AbstractElasticIndex<Change.Id, ChangeData>
     return new ElasticQuerySource(p, filteredOpts, getSortArray());
   }
 
-  private JsonArray getSortArray() {
+  @Override
+  @Nullable
+  protected String getIdField() {
+    // With routing, documents cannot be fetched by id without knowing their project.
+    return routeByProject() ? null : ChangeField.NUMERIC_ID_STR_SPEC.getName();
+  }
+
+  @VisibleForTesting
+  static JsonArray getSortArray() {
     JsonObject properties = new JsonObject();
     properties.addProperty(ORDER, DESC_SORT_ORDER);
 
@@ -142,7 +240,21 @@ class ElasticChangeIndex extends AbstractElasticIndex<Change.Id, ChangeData>
     return sortArray;
   }
 
-  private JsonObject getMergedOnSortOptions() {
+  @Override
+  protected ImmutableMap<String, String> getIndexSort() {
+    if (!sortIndex) {
+      return ImmutableMap.of();
+    }
+    if (!schema.hasField(ChangeField.MERGED_ON_SPEC)) {
+      logger.atWarning().log(
+          "Not sorting index %s, schema version %d has no %s field",
+          indexName, schema.getVersion(), ChangeField.MERGED_ON_SPEC.getName());
+      return ImmutableMap.of();
+    }
+    return INDEX_SORT;
+  }
+
+  private static JsonObject getMergedOnSortOptions() {
     JsonObject sortOptions = new JsonObject();
     sortOptions.addProperty(ORDER, DESC_SORT_ORDER);
     // Ignore the sort field if it does not exist in index. Otherwise the search would fail on open
@@ -168,6 +280,28 @@ class ElasticChangeIndex extends AbstractElasticIndex<Change.Id, ChangeData>
 
   @Override
   protected ChangeData fromDocument(JsonObject json, Set<String> fields) {
+    return fromDocument(json, requestedFields(fields));
+  }
+
+  @Override
+  protected Function<JsonObject, ChangeData> documentMapper(Set<String> fields) {
+    ImmutableList<SchemaField<ChangeData, ?>> requestedFields = requestedFields(fields);
+    return json -> fromDocument(json, requestedFields);
+  }
+
+  @Override
+  protected void prefetch(List<ChangeData> changes, Set<String> fields) {
+    prefetcher.prefetch(changes, fields);
+  }
+
+  private ImmutableList<SchemaField<ChangeData, ?>> requestedFields(Set<String> fields) {
+    return getSchema().getSchemaFields().values().stream()
+        .filter(f -> fields.contains(f.getName()))
+        .collect(toImmutableList());
+  }
+
+  private ChangeData fromDocument(
+      JsonObject json, ImmutableList<SchemaField<ChangeData, ?>> requestedFields) {
     JsonElement sourceElement = json.get("_source");
     if (sourceElement == null) {
       sourceElement = json.getAsJsonObject().get("fields");
@@ -187,15 +321,61 @@ class ElasticChangeIndex extends AbstractElasticIndex<Change.Id, ChangeData>
         changeDataFactory.create(
             parseProtoFrom(decodeBase64(c.getAsString()), ChangeProtoConverter.INSTANCE));
 
-    for (SchemaField<ChangeData, ?> field : getSchema().getSchemaFields().values()) {
-      if (fields.contains(field.getName()) && source.get(field.getName()) != null) {
-        field.setIfPossible(cd, new ElasticStoredValue(source.get(field.getName())));
+    for (SchemaField<ChangeData, ?> field : requestedFields) {
+      JsonElement value = source.get(field.getName());
+      if (value != null) {
+        field.setIfPossible(cd, new ElasticStoredValue(value));
       }
     }
 
     return cd;
   }
 
+  @Override
+  @Nullable
+  protected String getRouting(Predicate<ChangeData> p) {
+    if (!routeByProject()) {
+      return null;
+    }
+    Set<String> projects = queryBuilder.requiredValues(p, ChangeField.PROJECT_SPEC.getName());
+    return projects != null ? getSearchRouting(projects) : null;
+  }
+
+  /**
+   * Returns the routing of a search for changes of the given projects, or {@code null} if all
+   * shards must be searched.
+   */
+  @VisibleForTesting
+  @Nullable
+  static String getSearchRouting(Collection<String> projects) {
+    if (projects.isEmpty()) {
+      return null;
+    }
+    // Elasticsearch splits the routing parameter of searches on commas, so such a project name
+    // would be routed to the wrong shard. Search all shards instead. Writes use the routing as is.
+    if (projects.stream().anyMatch(project -> project.contains(","))) {
+      return null;
+    }
+    return String.join(",", projects);
+  }
+
+  @Nullable
+  private String getRouting(Project.NameKey project) {
+    return routeByProject() ? project.get() : null;
+  }
+
+  private boolean routeByProject() {
+    JsonElement routing = getIndexMeta().get(META_ROUTING);
+    boolean routed = routing != null && ROUTING_BY_PROJECT.equals(routing.getAsString());
+    if (routed != routeChangesByProject) {
+      logger.atWarning().atMostEvery(1, TimeUnit.HOURS).log(
+          "Index %s was created with routeChangesByProject = %s, which differs from the"
+              + " configuration. Reindex the changes to apply the configured routing.",
+          indexName, routed);
+    }
+    return routed;
+  }
+
   @Override
   public void deleteAllForProject(NameKey project) {
     QueryBuilder qb;
@@ -204,15 +384,23 @@ class ElasticChangeIndex extends AbstractElasticIndex<Change.Id, ChangeData>
     } catch (QueryParseException e) {
       throw new IllegalStateException("Failed to build project query.", e);
     }
+    String routing = routeByProject() ? getSearchRouting(ImmutableSet.of(project.get())) : null;
+    deleteByQuery(qb, routing, String.format("changes in project %s", project));
+  }
+
+  private void deleteByQuery(QueryBuilder qb, @Nullable String routing, String description) {
+    // Deleting by query only matches documents that are visible to searches.
+    refreshAllIfNeeded();
     String payload = new SearchSourceBuilder(client.adapter()).query(qb).toString();
     String uri = getURI(DELETE_BY_QUERY);
-    Response response = postRequestWithRefreshParam(uri, payload);
+    Response response =
+        postRequestWithRefreshParam(
+            uri, payload, routing != null ? ImmutableMap.of(ROUTING, routing) : ImmutableMap.of());
     int statusCode = response.getStatusLine().getStatusCode();
     if (statusCode != HttpStatus.SC_OK) {
       throw new StorageException(
           String.format(
-              "Failed to delete changes in project %s from index %s: %s",
-              project, indexName, statusCode));
+              "Failed to delete %s from index %s: %s", description, indexName, statusCode));
     }
   }
 }
@@ -17,6 +17,7 @@ package com.google.gerrit.elasticsearch;
 import static com.google.common.base.MoreObjects.firstNonNull;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.index.IndexConfig;
 import com.google.gerrit.index.PaginationType;
@@ -48,6 +49,33 @@ public class ElasticConfiguration {
   static final String KEY_CODEC = "codec";
   static final String KEY_CONNECT_TIMEOUT = "connectTimeout";
   static final String KEY_SOCKET_TIMEOUT = "socketTimeout";
+  static final String KEY_CARDINALITY_FIELD = "cardinalityField";
+  static final String KEY_CARDINALITY_REFRESH_INTERVAL = "cardinalityRefreshInterval";
+  static final String KEY_ACCELERATE_REGEX_QUERIES = "accelerateRegexQueries";
+  static final String KEY_ACCELERATE_PREFIX_QUERIES = "acceleratePrefixQueries";
+  static final String KEY_MULTI_SEARCH_WINDOW = "multiSearchWindow";
+  static final String KEY_MULTI_SEARCH_MAX_BATCH_SIZE = "multiSearchMaxBatchSize";
+  static final String KEY_PREFETCH_CHANGE_DATA = "prefetchChangeData";
+  static final String KEY_SEARCH_TIMEOUT = "searchTimeout";
+  static final String KEY_TERMINATE_AFTER = "terminateAfter";
+  static final String KEY_HEDGE_SEARCH_PERCENTILE = "hedgeSearchPercentile";
+  static final String KEY_HEDGE_SEARCH_BUDGET = "hedgeSearchBudget";
+  static final String KEY_SEARCH_PREFERENCE = "searchPreference";
+  static final String KEY_ROUTE_CHANGES_BY_PROJECT = "routeChangesByProject";
+  static final String KEY_SORT_CHANGE_INDEX = "sortChangeIndex";
+  static final String KEY_SLOW_QUERY_THRESHOLD = "slowQueryThreshold";
+  static final String KEY_SLOW_QUERY_PROFILE_PERCENTAGE = "slowQueryProfilePercentage";
+  static final String KEY_REFRESH_MODE = "refreshMode";
+  static final String KEY_REFRESH_SCOPE = "refreshScope";
+  static final String KEY_OFFSET_CURSOR_CACHE_SIZE = "offsetCursorCacheSize";
+  static final String KEY_PREFETCH_NEXT_PAGE = "prefetchNextPage";
+  static final String KEY_OVER_FETCH_MAX_FACTOR = "overFetchMaxFactor";
+  static final String KEY_REGEX_MIN_PREFIX_LENGTH = "regexMinPrefixLength";
+  static final String KEY_REGEX_MAX_COMPLEXITY = "regexMaxComplexity";
+  static final String KEY_EXPENSIVE_REGEX_ACTION = "expensiveRegexAction";
+  static final String KEY_EXPENSIVE_REGEX_TIMEOUT = "expensiveRegexTimeout";
+  static final String KEY_EXPENSIVE_REGEX_CONCURRENCY = "expensiveRegexConcurrency";
+  static final String KEY_BACKGROUND_THREADS = "backgroundThreads";
 
   static final String DEFAULT_CODEC = "default";
   static final String DEFAULT_PORT = "9200";
@@ -57,6 +85,12 @@ public class ElasticConfiguration {
   static final int DEFAULT_MAX_RESULT_WINDOW = Integer.MAX_VALUE;
   static final int DEFAULT_CONNECT_TIMEOUT = RestClientBuilder.DEFAULT_CONNECT_TIMEOUT_MILLIS;
   static final int DEFAULT_SOCKET_TIMEOUT = RestClientBuilder.DEFAULT_SOCKET_TIMEOUT_MILLIS;
+  static final long DEFAULT_CARDINALITY_REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+  static final long DEFAULT_EXPENSIVE_REGEX_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+  static final int DEFAULT_EXPENSIVE_REGEX_CONCURRENCY = 2;
+  static final int DEFAULT_BACKGROUND_THREADS = 4;
+  static final int DEFAULT_MULTI_SEARCH_MAX_BATCH_SIZE = 20;
+  static final int DEFAULT_HEDGE_SEARCH_BUDGET = 5;
 
   private final Config cfg;
   private final List<HttpHost> hosts;
@@ -70,6 +104,33 @@ public class ElasticConfiguration {
   final int connectTimeout;
   final int socketTimeout;
   final String prefix;
+  final ImmutableSet<String> cardinalityFields;
+  final long cardinalityRefreshInterval;
+  final boolean accelerateRegexQueries;
+  final boolean acceleratePrefixQueries;
+  final long multiSearchWindow;
+  final int multiSearchMaxBatchSize;
+  final boolean prefetchChangeData;
+  final long searchTimeout;
+  final int terminateAfter;
+  final int hedgeSearchPercentile;
+  final int hedgeSearchBudget;
+  final ElasticSearchPreference.Mode searchPreference;
+  final boolean routeChangesByProject;
+  final boolean sortChangeIndex;
+  final long slowQueryThreshold;
+  final int slowQueryProfilePercentage;
+  final ElasticRefresher.Mode refreshMode;
+  final ElasticRefresher.Scope refreshScope;
+  final int offsetCursorCacheSize;
+  final boolean prefetchNextPage;
+  final int overFetchMaxFactor;
+  final int regexMinPrefixLength;
+  final int regexMaxComplexity;
+  final ElasticRegexCost.Action expensiveRegexAction;
+  final long expensiveRegexTimeout;
+  final int expensiveRegexConcurrency;
+  final int backgroundThreads;
 
   @Inject
   ElasticConfiguration(@GerritServerConfig Config cfg, IndexConfig indexConfig) {
@@ -109,6 +170,89 @@ public class ElasticConfiguration {
                 KEY_SOCKET_TIMEOUT,
                 DEFAULT_SOCKET_TIMEOUT,
                 TimeUnit.MILLISECONDS);
+    this.cardinalityFields =
+        ImmutableSet.copyOf(cfg.getStringList(SECTION_ELASTICSEARCH, null, KEY_CARDINALITY_FIELD));
+    this.cardinalityRefreshInterval =
+        cfg.getTimeUnit(
+            SECTION_ELASTICSEARCH,
+            null,
+            KEY_CARDINALITY_REFRESH_INTERVAL,
+            DEFAULT_CARDINALITY_REFRESH_INTERVAL,
+            TimeUnit.MILLISECONDS);
+    this.accelerateRegexQueries =
+        cfg.getBoolean(SECTION_ELASTICSEARCH, null, KEY_ACCELERATE_REGEX_QUERIES, false);
+    this.acceleratePrefixQueries =
+        cfg.getBoolean(SECTION_ELASTICSEARCH, null, KEY_ACCELERATE_PREFIX_QUERIES, false);
+    this.multiSearchWindow =
+        cfg.getTimeUnit(
+            SECTION_ELASTICSEARCH, null, KEY_MULTI_SEARCH_WINDOW, 0, TimeUnit.MILLISECONDS);
+    this.multiSearchMaxBatchSize =
+        cfg.getInt(
+            SECTION_ELASTICSEARCH,
+            null,
+            KEY_MULTI_SEARCH_MAX_BATCH_SIZE,
+            DEFAULT_MULTI_SEARCH_MAX_BATCH_SIZE);
+    this.prefetchChangeData =
+        cfg.getBoolean(SECTION_ELASTICSEARCH, null, KEY_PREFETCH_CHANGE_DATA, false);
+    this.searchTimeout =
+        cfg.getTimeUnit(SECTION_ELASTICSEARCH, null, KEY_SEARCH_TIMEOUT, 0, TimeUnit.MILLISECONDS);
+    this.terminateAfter = cfg.getInt(SECTION_ELASTICSEARCH, null, KEY_TERMINATE_AFTER, 0);
+    this.hedgeSearchPercentile =
+        cfg.getInt(SECTION_ELASTICSEARCH, null, KEY_HEDGE_SEARCH_PERCENTILE, 0);
+    this.hedgeSearchBudget =
+        cfg.getInt(
+            SECTION_ELASTICSEARCH, null, KEY_HEDGE_SEARCH_BUDGET, DEFAULT_HEDGE_SEARCH_BUDGET);
+    this.searchPreference =
+        cfg.getEnum(
+            SECTION_ELASTICSEARCH,
+            null,
+            KEY_SEARCH_PREFERENCE,
+            ElasticSearchPreference.Mode.NONE);
+    this.routeChangesByProject =
+        cfg.getBoolean(SECTION_ELASTICSEARCH, null, KEY_ROUTE_CHANGES_BY_PROJECT, false);
+    this.sortChangeIndex =
+        cfg.getBoolean(SECTION_ELASTICSEARCH, null, KEY_SORT_CHANGE_INDEX, false);
+    this.slowQueryThreshold =
+        cfg.getTimeUnit(
+            SECTION_ELASTICSEARCH, null, KEY_SLOW_QUERY_THRESHOLD, 0, TimeUnit.MILLISECONDS);
+    this.slowQueryProfilePercentage =
+        cfg.getInt(SECTION_ELASTICSEARCH, null, KEY_SLOW_QUERY_PROFILE_PERCENTAGE, 0);
+    this.refreshMode =
+        cfg.getEnum(
+            SECTION_ELASTICSEARCH, null, KEY_REFRESH_MODE, ElasticRefresher.Mode.IMMEDIATE);
+    this.refreshScope =
+        cfg.getEnum(SECTION_ELASTICSEARCH, null, KEY_REFRESH_SCOPE, ElasticRefresher.Scope.ALL);
+    this.offsetCursorCacheSize =
+        cfg.getInt(SECTION_ELASTICSEARCH, null, KEY_OFFSET_CURSOR_CACHE_SIZE, 0);
+    this.prefetchNextPage =
+        cfg.getBoolean(SECTION_ELASTICSEARCH, null, KEY_PREFETCH_NEXT_PAGE, false);
+    this.overFetchMaxFactor =
+        cfg.getInt(SECTION_ELASTICSEARCH, null, KEY_OVER_FETCH_MAX_FACTOR, 1);
+    this.regexMinPrefixLength =
+        cfg.getInt(SECTION_ELASTICSEARCH, null, KEY_REGEX_MIN_PREFIX_LENGTH, 0);
+    this.regexMaxComplexity = cfg.getInt(SECTION_ELASTICSEARCH, null, KEY_REGEX_MAX_COMPLEXITY, 0);
+    this.expensiveRegexAction =
+        cfg.getEnum(
+            SECTION_ELASTICSEARCH,
+            null,
+            KEY_EXPENSIVE_REGEX_ACTION,
+            ElasticRegexCost.Action.LIMIT);
+    this.expensiveRegexTimeout =
+        cfg.getTimeUnit(
+            SECTION_ELASTICSEARCH,
+            null,
+            KEY_EXPENSIVE_REGEX_TIMEOUT,
+            DEFAULT_EXPENSIVE_REGEX_TIMEOUT,
+            TimeUnit.MILLISECONDS);
+    this.expensiveRegexConcurrency =
+        cfg.getInt(
+            SECTION_ELASTICSEARCH,
+            null,
+            KEY_EXPENSIVE_REGEX_CONCURRENCY,
+            DEFAULT_EXPENSIVE_REGEX_CONCURRENCY);
+    this.backgroundThreads =
+        cfg.getInt(
+            SECTION_ELASTICSEARCH, null, KEY_BACKGROUND_THREADS, DEFAULT_BACKGROUND_THREADS);
     this.hosts = new ArrayList<>();
     for (String server : cfg.getStringList(SECTION_ELASTICSEARCH, null, KEY_SERVER)) {
       try {
@@ -142,6 +286,23 @@ public class ElasticConfiguration {
     return String.format("%s%s_%04d", prefix, name, schemaVersion);
   }
 
+  /**
+   * Returns the server-side search timeout in milliseconds for the given index type, e.g.
+   * {@code changes}, or 0 if searches are not limited.
+   */
+  long getSearchTimeout(String indexType) {
+    return cfg.getTimeUnit(
+        SECTION_ELASTICSEARCH, indexType, KEY_SEARCH_TIMEOUT, searchTimeout, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Returns the number of documents per shard after which searches on the given index type are
+   * terminated, or 0 if searches are not terminated early.
+   */
+  int getTerminateAfter(String indexType) {
+    return cfg.getInt(SECTION_ELASTICSEARCH, indexType, KEY_TERMINATE_AFTER, terminateAfter);
+  }
+
   int getNumberOfShards() {
     return numberOfShards;
   }
@@ -0,0 +1,64 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.server.CurrentUser;
+import com.google.inject.Inject;
+import com.google.inject.OutOfScopeException;
+import com.google.inject.Provider;
+import com.google.inject.ProvisionException;
+import com.google.inject.Singleton;
+
+/** Identifies the user on whose behalf the index is accessed, if any. */
+@Singleton
+class ElasticCurrentUser {
+  private final Provider<CurrentUser> currentUser;
+
+  @Inject
+  ElasticCurrentUser(Provider<CurrentUser> currentUser) {
+    this.currentUser = currentUser;
+  }
+
+  /**
+   * Returns the account of the current user, or null if the index is not accessed on behalf of an
+   * identified user, e.g. during reindexing or for anonymous users.
+   */
+  @Nullable
+  Account.Id getAccountId() {
+    CurrentUser user;
+    try {
+      user = currentUser.get();
+    } catch (OutOfScopeException | ProvisionException e) {
+      // Not in a request.
+      return null;
+    }
+    return user.isIdentifiedUser() ? user.getAccountId() : null;
+  }
+
+  /**
+   * Whether the index is accessed on behalf of a user, identified or anonymous, as opposed to
+   * internally, e.g. by background jobs or reindexing.
+   */
+  boolean isUserFacing() {
+    try {
+      return !currentUser.get().isInternalUser();
+    } catch (OutOfScopeException | ProvisionException e) {
+      // Not in a request.
+      return false;
+    }
+  }
+}
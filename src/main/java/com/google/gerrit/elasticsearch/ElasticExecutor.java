@@ -0,0 +1,47 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Runs the background work of the indexes, e.g. loading term statistics or reading the slices of
+ * a scan, on a work queue shared by all indexes.
+ */
+@Singleton
+class ElasticExecutor {
+  private final ListeningExecutorService executor;
+
+  @Inject
+  ElasticExecutor(ElasticConfiguration cfg, WorkQueue workQueue) {
+    this(
+        MoreExecutors.listeningDecorator(
+            workQueue.createQueue(Math.max(1, cfg.backgroundThreads), "Elasticsearch-Index")));
+  }
+
+  @VisibleForTesting
+  ElasticExecutor(ListeningExecutorService executor) {
+    this.executor = executor;
+  }
+
+  ListeningExecutorService get() {
+    return executor;
+  }
+}
@@ -14,6 +14,9 @@
 
 package com.google.gerrit.elasticsearch;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.gerrit.elasticsearch.ElasticMapping.Mapping;
 import com.google.gerrit.elasticsearch.bulk.BulkRequest;
@@ -39,7 +42,11 @@ import com.google.gson.JsonObject;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.assistedinject.Assisted;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import org.apache.http.HttpStatus;
 import org.elasticsearch.client.Response;
 
@@ -48,8 +55,9 @@ public class ElasticGroupIndex extends AbstractElasticIndex<AccountGroup.UUID, I
   static class GroupMapping {
     final Mapping groups;
 
-    GroupMapping(Schema<InternalGroup> schema, ElasticQueryAdapter adapter) {
-      this.groups = ElasticMapping.createMapping(schema, adapter);
+    GroupMapping(
+        Schema<InternalGroup> schema, ElasticQueryAdapter adapter, ElasticConfiguration cfg) {
+      this.groups = ElasticMapping.createMapping(schema, adapter, cfg);
     }
   }
 
@@ -62,14 +70,29 @@ public class ElasticGroupIndex extends AbstractElasticIndex<AccountGroup.UUID, I
   @Inject
   ElasticGroupIndex(
       ElasticConfiguration cfg,
+      ElasticMetrics metrics,
+      ElasticSearchPreference searchPreference,
+      ElasticCurrentUser currentUser,
+      ElasticExecutor executor,
       SitePaths sitePaths,
       Provider<GroupCache> groupCache,
       ElasticRestClientProvider client,
       AutoFlush autoFlush,
       @Assisted Schema<InternalGroup> schema) {
-    super(cfg, sitePaths, schema, client, GROUPS, autoFlush, GroupIndex.ENTITY_TO_KEY);
+    super(
+        cfg,
+        metrics,
+        searchPreference,
+        currentUser,
+        executor,
+        sitePaths,
+        schema,
+        client,
+        GROUPS,
+        autoFlush,
+        GroupIndex.ENTITY_TO_KEY);
     this.groupCache = groupCache;
-    this.mapping = new GroupMapping(schema, client.adapter());
+    this.mapping = new GroupMapping(schema, client.adapter(), cfg);
     this.schema = schema;
   }
 
@@ -97,6 +120,16 @@ public class ElasticGroupIndex extends AbstractElasticIndex<AccountGroup.UUID, I
     return new ElasticQuerySource(p, opts.filterFields(IndexUtils::groupFields), sortArray);
   }
 
+  @Override
+  protected String getIdField() {
+    return GroupField.UUID_FIELD_SPEC.getName();
+  }
+
+  @Override
+  protected boolean isSortedById() {
+    return true;
+  }
+
   @Override
   protected String getDeleteActions(AccountGroup.UUID g) {
     return getDeleteRequest(g);
@@ -114,16 +147,35 @@ public class ElasticGroupIndex extends AbstractElasticIndex<AccountGroup.UUID, I
 
   @Override
   protected InternalGroup fromDocument(JsonObject json, Set<String> fields) {
+    // Use the GroupCache rather than depending on any stored fields in the
+    // document (of which there shouldn't be any).
+    return groupCache.get().get(getGroupUUID(json)).orElse(null);
+  }
+
+  @Override
+  protected List<InternalGroup> fromDocuments(
+      List<JsonObject> docs, Function<JsonObject, InternalGroup> mapper) {
+    ImmutableList<AccountGroup.UUID> uuids =
+        docs.stream().map(this::getGroupUUID).collect(toImmutableList());
+    // Load all groups of the page at once, so that cache misses are loaded in one batch.
+    Map<AccountGroup.UUID, InternalGroup> groups = groupCache.get().get(uuids);
+    List<InternalGroup> result = new ArrayList<>(uuids.size());
+    for (AccountGroup.UUID uuid : uuids) {
+      InternalGroup group = groups.get(uuid);
+      if (group != null) {
+        result.add(group);
+      }
+    }
+    return result;
+  }
+
+  private AccountGroup.UUID getGroupUUID(JsonObject json) {
     JsonElement source = json.get("_source");
     if (source == null) {
       source = json.getAsJsonObject().get("fields");
     }
 
-    AccountGroup.UUID uuid =
-        AccountGroup.uuid(
-            source.getAsJsonObject().get(GroupField.UUID_FIELD_SPEC.getName()).getAsString());
-    // Use the GroupCache rather than depending on any stored fields in the
-    // document (of which there shouldn't be any).
-    return groupCache.get().get(uuid).orElse(null);
+    return AccountGroup.uuid(
+        source.getAsJsonObject().get(GroupField.UUID_FIELD_SPEC.getName()).getAsString());
   }
 }
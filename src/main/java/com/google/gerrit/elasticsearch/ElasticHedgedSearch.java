@@ -0,0 +1,191 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.gerrit.exceptions.StorageException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.elasticsearch.client.Cancellable;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+
+/**
+ * Sends a second copy of a read-only search when the first one takes longer than the configured
+ * percentile of recent search latencies, and uses whichever response arrives first.
+ *
+ * <p>The REST client sends requests to the configured hosts in round-robin order, so with more than
+ * one host the duplicate is normally served by a different node than the original request. The
+ * number of duplicates is capped by {@code elasticsearch.hedgeSearchBudget}.
+ */
+class ElasticHedgedSearch {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  static final int LATENCY_SAMPLES = 1000;
+  static final int MIN_LATENCY_SAMPLES = 20;
+  static final int HEDGE_DELAY_UPDATE_INTERVAL = 50;
+  static final double MAX_HEDGE_TOKENS = 10;
+
+  private final ElasticRestClientProvider client;
+  private final String indexName;
+  private final int percentile;
+  private final double budget;
+
+  private final long[] latencies = new long[LATENCY_SAMPLES];
+  private int latencyCount;
+  private int nextLatency;
+  private int samplesSinceUpdate;
+  private long hedgeDelay = -1;
+  private double hedgeTokens;
+
+  ElasticHedgedSearch(
+      ElasticRestClientProvider client, ElasticConfiguration cfg, String indexName) {
+    this.client = client;
+    this.indexName = indexName;
+    this.percentile = cfg.hedgeSearchPercentile;
+    this.budget = cfg.hedgeSearchBudget / 100.0;
+  }
+
+  boolean isEnabled() {
+    return percentile > 0 && percentile < 100 && budget > 0;
+  }
+
+  Response perform(Request request) throws IOException {
+    if (!isEnabled()) {
+      return client.get().performRequest(request);
+    }
+
+    long start = System.nanoTime();
+    long hedgeDelay = hedgeDelayNanos();
+    SettableFuture<Response> result = SettableFuture.create();
+    AtomicInteger outstanding = new AtomicInteger();
+    Cancellable primary = send(request, result, outstanding);
+    Cancellable hedge = null;
+    try {
+      if (hedgeDelay >= 0) {
+        try {
+          return recordLatency(result.get(hedgeDelay, NANOSECONDS), start);
+        } catch (TimeoutException e) {
+          if (acquireHedge()) {
+            logger.atFine().log(
+                "Search on index %s is slower than %d ms, sending hedged request",
+                indexName, NANOSECONDS.toMillis(hedgeDelay));
+            hedge = send(withoutPreference(request), result, outstanding);
+          }
+        }
+      }
+      return recordLatency(result.get(), start);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StorageException("Interrupted while searching index " + indexName, e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new StorageException(e.getCause());
+    } finally {
+      primary.cancel();
+      if (hedge != null) {
+        hedge.cancel();
+      }
+    }
+  }
+
+  private Cancellable send(
+      Request request, SettableFuture<Response> result, AtomicInteger outstanding) {
+    outstanding.incrementAndGet();
+    return client
+        .get()
+        .performRequestAsync(
+            request,
+            new ResponseListener() {
+              @Override
+              public void onSuccess(Response response) {
+                result.set(response);
+              }
+
+              @Override
+              public void onFailure(Exception e) {
+                // Only fail if no other copy of the search can still succeed.
+                if (outstanding.decrementAndGet() == 0) {
+                  result.setException(e);
+                }
+              }
+            });
+  }
+
+  /**
+   * Returns a copy of the request without {@code preference}, which would send the hedged request
+   * to the same, possibly slow, shard copies as the original one.
+   */
+  private static Request withoutPreference(Request request) {
+    if (!request.getParameters().containsKey(AbstractElasticIndex.PREFERENCE)) {
+      return request;
+    }
+    Request copy = new Request(request.getMethod(), request.getEndpoint());
+    copy.setEntity(request.getEntity());
+    copy.setOptions(request.getOptions());
+    request.getParameters().entrySet().stream()
+        .filter(e -> !e.getKey().equals(AbstractElasticIndex.PREFERENCE))
+        .forEach(e -> copy.addParameter(e.getKey(), e.getValue()));
+    return copy;
+  }
+
+  private Response recordLatency(Response response, long start) {
+    recordLatency(System.nanoTime() - start);
+    return response;
+  }
+
+  /** Records the latency of a search and earns the budget of hedged requests for it. */
+  @VisibleForTesting
+  synchronized void recordLatency(long latencyNanos) {
+    latencies[nextLatency] = latencyNanos;
+    nextLatency = (nextLatency + 1) % LATENCY_SAMPLES;
+    latencyCount = Math.min(latencyCount + 1, LATENCY_SAMPLES);
+    samplesSinceUpdate++;
+    if (latencyCount >= MIN_LATENCY_SAMPLES
+        && (hedgeDelay == -1 || samplesSinceUpdate >= HEDGE_DELAY_UPDATE_INTERVAL)) {
+      long[] sorted = Arrays.copyOf(latencies, latencyCount);
+      Arrays.sort(sorted);
+      hedgeDelay = sorted[Math.min(latencyCount - 1, latencyCount * percentile / 100)];
+      samplesSinceUpdate = 0;
+    }
+    hedgeTokens = Math.min(hedgeTokens + budget, MAX_HEDGE_TOKENS);
+  }
+
+  /** Returns the configured percentile of recent latencies, or -1 if there are too few samples. */
+  @VisibleForTesting
+  synchronized long hedgeDelayNanos() {
+    return hedgeDelay;
+  }
+
+  /** Takes one hedged request from the budget, if there is any left. */
+  @VisibleForTesting
+  synchronized boolean acquireHedge() {
+    if (hedgeTokens < 1) {
+      return false;
+    }
+    hedgeTokens--;
+    return true;
+  }
+}
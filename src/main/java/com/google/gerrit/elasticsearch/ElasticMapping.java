@@ -19,15 +19,29 @@ import com.google.gerrit.index.FieldType;
 import com.google.gerrit.index.Schema;
 import com.google.gerrit.index.SchemaFieldDefs.SchemaField;
 import com.google.gson.annotations.SerializedName;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 class ElasticMapping {
 
   protected static final String TIMESTAMP_FIELD_TYPE = "date";
   protected static final String TIMESTAMP_FIELD_FORMAT = "date_optional_time";
-
-  static Mapping createMapping(Schema<?> schema, ElasticQueryAdapter adapter) {
-    ElasticMapping.Builder mapping = new ElasticMapping.Builder(adapter);
+  protected static final String WILDCARD_FIELD_TYPE = "wildcard";
+  protected static final String WILDCARD_SUBFIELD = "wildcard";
+
+  /**
+   * Key of the mapping {@code _meta} that records whether exact-match fields have a {@link
+   * #WILDCARD_SUBFIELD}. Queries check the existing index rather than the configuration, which
+   * may have changed since the index was created.
+   */
+  static final String META_WILDCARD_SUBFIELDS = "wildcard_subfields";
+
+  private static final int INDEX_PREFIXES_MIN_CHARS = 1;
+  private static final int INDEX_PREFIXES_MAX_CHARS = 10;
+
+  static Mapping createMapping(
+      Schema<?> schema, ElasticQueryAdapter adapter, ElasticConfiguration config) {
+    ElasticMapping.Builder mapping = new ElasticMapping.Builder(adapter, config);
     for (SchemaField<?, ?> field : schema.getSchemaFields().values()) {
       String name = field.getName();
       FieldType<?> fieldType = field.getType();
@@ -42,7 +56,7 @@ class ElasticMapping {
       } else if (fieldType == FieldType.FULL_TEXT) {
         mapping.addStringWithAnalyzer(name, "custom_with_char_filter");
       } else if (fieldType == FieldType.PREFIX) {
-        mapping.addStringWithAnalyzer(name, "keyword_tokenizer");
+        mapping.addPrefixField(name, "keyword_tokenizer");
       } else if (fieldType == FieldType.STORED_ONLY) {
         mapping.addString(name);
       } else {
@@ -59,24 +73,37 @@ class ElasticMapping {
 
   static class Builder {
     private final ElasticQueryAdapter adapter;
+    private final ElasticConfiguration config;
     private final ImmutableMap.Builder<String, FieldProperties> fields =
         new ImmutableMap.Builder<>();
     private final ImmutableMap.Builder<String, String[]> sourceIncludes =
         new ImmutableMap.Builder<>();
+    private final Map<String, Object> meta = new LinkedHashMap<>();
+    private final boolean wildcardSubfields;
 
-    Builder(ElasticQueryAdapter adapter) {
+    Builder(ElasticQueryAdapter adapter, ElasticConfiguration config) {
       this.adapter = adapter;
+      this.config = config;
+      this.wildcardSubfields = config.accelerateRegexQueries && adapter.supportsWildcardFields();
     }
 
     Mapping build() {
       Mapping mapping = new Mapping();
+      mapping.meta = new LinkedHashMap<>(meta);
       mapping.properties = fields.build();
       mapping.source = sourceIncludes.build();
       return mapping;
     }
 
     Builder addExactField(String name) {
-      fields.put(name, new FieldProperties(adapter.exactFieldType()));
+      FieldProperties properties = new FieldProperties(adapter.exactFieldType());
+      if (wildcardSubfields) {
+        // Regular expressions are run against a wildcard subfield, which is indexed with n-grams.
+        properties.fields =
+            ImmutableMap.of(WILDCARD_SUBFIELD, new FieldProperties(WILDCARD_FIELD_TYPE));
+        meta.put(META_WILDCARD_SUBFIELDS, true);
+      }
+      fields.put(name, properties);
       return this;
     }
 
@@ -105,6 +132,18 @@ class ElasticMapping {
       return this;
     }
 
+    Builder addPrefixField(String name, String analyzer) {
+      FieldProperties key = new FieldProperties(adapter.stringFieldType());
+      key.analyzer = analyzer;
+      if (config.acceleratePrefixQueries) {
+        key.indexPrefixes =
+            ImmutableMap.of(
+                "min_chars", INDEX_PREFIXES_MIN_CHARS, "max_chars", INDEX_PREFIXES_MAX_CHARS);
+      }
+      fields.put(name, key);
+      return this;
+    }
+
     Builder addSourceIncludes(String[] includes) {
       sourceIncludes.put("includes", includes);
       return this;
@@ -117,6 +156,9 @@ class ElasticMapping {
   }
 
   static class Mapping {
+    @SerializedName("_meta")
+    Map<String, Object> meta;
+
     @SerializedName("_source")
     Map<String, String[]> source;
 
@@ -128,6 +170,7 @@ class ElasticMapping {
     String index;
     String format;
     String analyzer;
+    Map<String, Integer> indexPrefixes;
     Map<String, FieldProperties> fields;
 
     FieldProperties(String type) {
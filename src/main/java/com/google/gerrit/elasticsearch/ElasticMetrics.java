@@ -0,0 +1,68 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.logging.Metadata;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/** Metrics of the Elasticsearch index, shared by all index types. */
+@Singleton
+class ElasticMetrics {
+  final Counter1<String> searchTimedOut;
+  final Counter1<String> searchTerminatedEarly;
+  final Counter1<String> overFetchServed;
+  final Counter1<String> overFetchSearched;
+
+  @Inject
+  ElasticMetrics(MetricMaker metricMaker) {
+    Field<String> index =
+        Field.ofString("index", Metadata.Builder::indexName)
+            .description("The type of the index that was searched.")
+            .build();
+    this.searchTimedOut =
+        metricMaker.newCounter(
+            "elasticsearch/search/timed_out",
+            new Description("Searches that exceeded elasticsearch.searchTimeout")
+                .setRate()
+                .setUnit("searches"),
+            index);
+    this.searchTerminatedEarly =
+        metricMaker.newCounter(
+            "elasticsearch/search/terminated_early",
+            new Description("Searches that were terminated after elasticsearch.terminateAfter hits")
+                .setRate()
+                .setUnit("searches"),
+            index);
+    this.overFetchServed =
+        metricMaker.newCounter(
+            "elasticsearch/search/over_fetch/served",
+            new Description("Follow-up searches served from hits fetched in excess")
+                .setRate()
+                .setUnit("searches"),
+            index);
+    this.overFetchSearched =
+        metricMaker.newCounter(
+            "elasticsearch/search/over_fetch/searched",
+            new Description("Follow-up searches that needed a new search despite over-fetching")
+                .setRate()
+                .setUnit("searches"),
+            index);
+  }
+}
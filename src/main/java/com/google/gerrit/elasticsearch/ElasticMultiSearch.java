@@ -0,0 +1,194 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.server.logging.Metadata;
+import com.google.gerrit.server.logging.TraceContext;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import org.apache.http.HttpStatus;
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+
+/**
+ * Collects the searches on one index that are issued within a short window into a single {@code
+ * _msearch} request.
+ *
+ * <p>The first search of a window waits for the configured window, or until the maximum batch
+ * size is reached, and then sends all collected searches. Every caller blocks until the response
+ * of its own search is available. A search that is issued while no other search of the index is
+ * running is sent right away, since it is unlikely that other searches join its batch.
+ */
+class ElasticMultiSearch {
+  static final String MULTI_SEARCH = "_msearch";
+
+  /** Sends the body of a multi search request and returns its response. */
+  @FunctionalInterface
+  interface Sender {
+    JsonObject send(String body) throws IOException;
+  }
+
+  private final String indexName;
+  private final Sender sender;
+  private final long windowNanos;
+  private final int maxBatchSize;
+
+  private final Object lock = new Object();
+  private List<PendingSearch> pending = new ArrayList<>();
+  private int running;
+
+  /**
+   * @param uri the encoded URI of the multi search endpoint of the index, see {@link #MULTI_SEARCH}
+   */
+  ElasticMultiSearch(
+      ElasticRestClientProvider client, ElasticConfiguration cfg, String indexName, String uri) {
+    this(cfg, indexName, body -> send(client, indexName, uri, body));
+  }
+
+  @VisibleForTesting
+  ElasticMultiSearch(ElasticConfiguration cfg, String indexName, Sender sender) {
+    this.indexName = indexName;
+    this.sender = sender;
+    this.windowNanos = MILLISECONDS.toNanos(cfg.multiSearchWindow);
+    this.maxBatchSize = cfg.multiSearchMaxBatchSize;
+  }
+
+  boolean isEnabled() {
+    return windowNanos > 0 && maxBatchSize > 1;
+  }
+
+  /**
+   * Executes the search as part of a batch.
+   *
+   * @param header the header line of the search, e.g. to set routing
+   * @param payload the search request body
+   * @return the response of the search; contains an {@code error} object if the search failed
+   */
+  JsonObject search(JsonObject header, String payload) {
+    PendingSearch search = new PendingSearch(header, payload);
+    List<PendingSearch> batch = null;
+    synchronized (lock) {
+      pending.add(search);
+      if (pending.size() == 1 && running == 0) {
+        batch = pending;
+        pending = new ArrayList<>();
+        running += batch.size();
+      } else if (pending.size() == 1) {
+        long deadline = System.nanoTime() + windowNanos;
+        long remaining;
+        while (pending.size() < maxBatchSize && (remaining = deadline - System.nanoTime()) > 0) {
+          try {
+            NANOSECONDS.timedWait(lock, remaining);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            break;
+          }
+        }
+        batch = pending;
+        pending = new ArrayList<>();
+        running += batch.size();
+      } else if (pending.size() >= maxBatchSize) {
+        lock.notifyAll();
+      }
+    }
+
+    if (batch != null) {
+      try {
+        execute(batch);
+      } finally {
+        synchronized (lock) {
+          running -= batch.size();
+        }
+      }
+    }
+    try {
+      return search.response.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StorageException("Interrupted while waiting for search on " + indexName, e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof StorageException) {
+        throw (StorageException) e.getCause();
+      }
+      throw new StorageException(e.getCause());
+    }
+  }
+
+  private void execute(List<PendingSearch> batch) {
+    StringBuilder body = new StringBuilder();
+    for (PendingSearch search : batch) {
+      body.append(search.header).append('\n').append(search.payload).append('\n');
+    }
+    try (TraceContext.TraceTimer traceTimer =
+        TraceContext.newTimer(
+            "Elasticsearch perform multi search",
+            Metadata.builder()
+                .indexName(indexName)
+                .operationName(String.format("searches:%d", batch.size()))
+                .build())) {
+      JsonArray responses = sender.send(body.toString()).getAsJsonArray("responses");
+      for (int i = 0; i < batch.size(); i++) {
+        batch.get(i).response.set(responses.get(i).getAsJsonObject());
+      }
+    } catch (IOException | RuntimeException e) {
+      StorageException error =
+          e instanceof StorageException ? (StorageException) e : new StorageException(e);
+      for (PendingSearch search : batch) {
+        search.response.setException(error);
+      }
+    }
+  }
+
+  private static JsonObject send(
+      ElasticRestClientProvider client, String indexName, String uri, String body)
+      throws IOException {
+    Request request = new Request(HttpPost.METHOD_NAME, "/" + uri);
+    request.setEntity(new NStringEntity(body, ContentType.APPLICATION_JSON));
+    Response response = client.get().performRequest(request);
+    StatusLine statusLine = response.getStatusLine();
+    if (statusLine.getStatusCode() != HttpStatus.SC_OK) {
+      throw new StorageException(
+          String.format(
+              "Multi search request on index %s failed: %s",
+              indexName, statusLine.getReasonPhrase()));
+    }
+    return AbstractElasticIndex.parseSearchContent(response);
+  }
+
+  private static class PendingSearch {
+    final String header;
+    final String payload;
+    final SettableFuture<JsonObject> response = SettableFuture.create();
+
+    PendingSearch(JsonObject header, String payload) {
+      this.header = header.toString();
+      this.payload = payload;
+    }
+  }
+}
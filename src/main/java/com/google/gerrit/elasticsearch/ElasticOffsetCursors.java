@@ -0,0 +1,108 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.common.Nullable;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.util.List;
+
+/**
+ * Remembers the sort values of the hits of the last page read for a search, so that a following
+ * search for the next offset can continue with {@code search_after} instead of {@code from}.
+ *
+ * <p>With {@code from}, every shard has to collect and sort {@code from + size} hits, which gets
+ * expensive for deep pages. Since the sort of every index is a total order, continuing after the
+ * sort values of the hit just before the requested offset returns the same hits.
+ */
+class ElasticOffsetCursors {
+  static final long EXPIRY_MINUTES = 5;
+
+  @Nullable private final Cache<String, Page> pages;
+
+  ElasticOffsetCursors(ElasticConfiguration cfg) {
+    this(cfg, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  ElasticOffsetCursors(ElasticConfiguration cfg, Ticker ticker) {
+    this.pages =
+        cfg.offsetCursorCacheSize > 0
+            ? CacheBuilder.newBuilder()
+                .maximumSize(cfg.offsetCursorCacheSize)
+                .expireAfterAccess(EXPIRY_MINUTES, MINUTES)
+                .ticker(ticker)
+                .build()
+            : null;
+  }
+
+  boolean isEnabled() {
+    return pages != null;
+  }
+
+  /**
+   * Returns the sort values of the hit just before {@code offset}, if the last page read for the
+   * search covers it.
+   *
+   * @param search the search, without its size and offset
+   * @param offset the offset of the first hit to read
+   */
+  @Nullable
+  JsonArray get(String search, int offset) {
+    if (pages == null || offset <= 0) {
+      return null;
+    }
+    Page page = pages.getIfPresent(search);
+    if (page == null || offset <= page.start || offset > page.start + page.sortValues.size()) {
+      return null;
+    }
+    return page.sortValues.get(offset - page.start - 1);
+  }
+
+  /**
+   * Records the sort values of a page of hits, whether it was searched or served from hits fetched
+   * in excess, so that the next page can continue after it.
+   *
+   * @param search the search, without its size and offset
+   * @param start the offset of the first hit of the page
+   * @param hits the hits of the page, in order
+   */
+  void put(String search, int start, List<JsonObject> hits) {
+    if (pages == null || hits.isEmpty() || hits.get(hits.size() - 1).get("sort") == null) {
+      return;
+    }
+    ImmutableList<JsonArray> sortValues =
+        hits.stream().map(h -> h.getAsJsonArray("sort")).collect(toImmutableList());
+    pages.put(search, new Page(start, sortValues));
+  }
+
+  private static class Page {
+    final int start;
+    final ImmutableList<JsonArray> sortValues;
+
+    Page(int start, ImmutableList<JsonArray> sortValues) {
+      this.start = start;
+      this.sortValues = sortValues;
+    }
+  }
+}
@@ -0,0 +1,168 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.common.Nullable;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.util.List;
+
+/**
+ * Fetches more hits than requested for searches whose results are often filtered by the caller,
+ * and serves the follow-up search for the remaining hits from the hits fetched in excess.
+ *
+ * <p>Gerrit drops the results that are not visible to the current user and searches again for
+ * more if too many were dropped. Whether that happens cannot be observed directly, so it is
+ * inferred from the follow-up searches: a follow-up that cannot be served from the excess hits
+ * doubles the over-fetch factor of the search, while excess hits that are not asked for reduce it
+ * again. Searches are identified by their fingerprint, i.e. the search without its size and
+ * position, so that repeated runs of the same query, e.g. a dashboard section, share a factor.
+ */
+class ElasticOverFetch {
+  private static final int MAX_SEARCHES = 1000;
+  private static final long PAGE_EXPIRY_SECONDS = 10;
+  private static final long FACTOR_EXPIRY_MINUTES = 30;
+  private static final double FACTOR_DECAY = 0.9;
+
+  private final ElasticMetrics metrics;
+  private final String indexType;
+  private final int maxFactor;
+  @Nullable private final Cache<String, Double> factors;
+  @Nullable private final Cache<String, Page> pages;
+
+  ElasticOverFetch(ElasticConfiguration cfg, ElasticMetrics metrics, String indexType) {
+    this.metrics = metrics;
+    this.indexType = indexType;
+    this.maxFactor = cfg.overFetchMaxFactor;
+    if (maxFactor > 1) {
+      this.factors =
+          CacheBuilder.newBuilder()
+              .maximumSize(MAX_SEARCHES)
+              .expireAfterAccess(FACTOR_EXPIRY_MINUTES, MINUTES)
+              .build();
+      this.pages =
+          CacheBuilder.newBuilder()
+              .maximumSize(MAX_SEARCHES)
+              .expireAfterWrite(PAGE_EXPIRY_SECONDS, SECONDS)
+              .<String, Page>removalListener(
+                  n -> {
+                    if (n.getCause() != RemovalCause.EXPLICIT && !n.getValue().hits.isEmpty()) {
+                      adjust(n.getKey(), FACTOR_DECAY);
+                    }
+                  })
+              .build();
+    } else {
+      this.factors = null;
+      this.pages = null;
+    }
+  }
+
+  boolean isEnabled() {
+    return factors != null;
+  }
+
+  /** Returns the number of hits to fetch for a search asking for {@code pageSize} hits. */
+  int fetchSize(@Nullable String fingerprint, int pageSize) {
+    if (factors == null || fingerprint == null) {
+      return pageSize;
+    }
+    Double factor = factors.getIfPresent(fingerprint);
+    if (factor == null || factor <= 1) {
+      return pageSize;
+    }
+    return (int) Math.min((long) Math.ceil(pageSize * factor), (long) pageSize * maxFactor);
+  }
+
+  /**
+   * Returns the hits for a follow-up search, if they were fetched in excess by the preceding
+   * search.
+   *
+   * @param fingerprint the search, without its size and position
+   * @param searchAfter the sort values after which the search continues, or {@code null}
+   * @param start the offset of the search, if {@code searchAfter} is {@code null}
+   * @param pageSize the number of hits asked for
+   * @return the hits, or {@code null} if the search must be sent
+   */
+  @Nullable
+  Page take(
+      @Nullable String fingerprint, @Nullable JsonArray searchAfter, int start, int pageSize) {
+    if (pages == null || fingerprint == null) {
+      return null;
+    }
+    Page page = pages.getIfPresent(fingerprint);
+    if (page == null
+        || (searchAfter != null ? !searchAfter.equals(page.searchAfter) : start != page.start)) {
+      return null;
+    }
+    pages.invalidate(fingerprint);
+    if (page.hits.size() >= pageSize || page.exhausted) {
+      metrics.overFetchServed.increment(indexType);
+      return page;
+    }
+    metrics.overFetchSearched.increment(indexType);
+    adjust(fingerprint, 2);
+    return null;
+  }
+
+  /**
+   * Records the hits that were fetched in excess after a full page was returned.
+   *
+   * @param fingerprint the search, without its size and position
+   * @param searchAfter the sort values of the last hit returned
+   * @param start the offset of the first hit not returned
+   * @param hits the hits fetched in excess
+   * @param exhausted whether the search found no further hits
+   */
+  void put(
+      @Nullable String fingerprint,
+      JsonArray searchAfter,
+      int start,
+      List<JsonObject> hits,
+      boolean exhausted) {
+    if (pages != null && fingerprint != null) {
+      pages.put(fingerprint, new Page(searchAfter, start, ImmutableList.copyOf(hits), exhausted));
+    }
+  }
+
+  private void adjust(String fingerprint, double multiplier) {
+    factors
+        .asMap()
+        .compute(
+            fingerprint,
+            (k, factor) ->
+                Math.max(1, Math.min(maxFactor, (factor != null ? factor : 1) * multiplier)));
+  }
+
+  static class Page {
+    final JsonArray searchAfter;
+    final int start;
+    final ImmutableList<JsonObject> hits;
+    final boolean exhausted;
+
+    Page(JsonArray searchAfter, int start, ImmutableList<JsonObject> hits, boolean exhausted) {
+      this.searchAfter = searchAfter;
+      this.start = start;
+      this.hits = hits;
+      this.exhausted = exhausted;
+    }
+  }
+}
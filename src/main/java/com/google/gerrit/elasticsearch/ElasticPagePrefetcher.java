@@ -0,0 +1,198 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.elasticsearch.builders.SearchSourceBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.client.Cancellable;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+
+/**
+ * Starts the search for the next page of results while the current page is being processed, and
+ * hands it over if the same search is requested shortly afterwards.
+ *
+ * <p>Prefetched searches are matched by their exact request, so that a next page requested with a
+ * different page size, or not requested at all, is never served from a prefetch. Prefetches that
+ * are not taken are cancelled when they expire or are evicted.
+ */
+class ElasticPagePrefetcher {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final int MAX_PENDING_PREFETCHES = 100;
+  static final long PREFETCH_EXPIRY_SECONDS = 30;
+
+  /** Sends a search in the background. */
+  @FunctionalInterface
+  interface Sender {
+    /**
+     * @param endpoint the endpoint of the search, starting with {@code /}
+     * @return the response, whose cancellation also cancels the search
+     */
+    Future<JsonObject> send(String endpoint, String search, Map<String, String> params);
+  }
+
+  private final String indexName;
+  private final Sender sender;
+  @Nullable private final Cache<String, Future<JsonObject>> prefetches;
+
+  ElasticPagePrefetcher(
+      ElasticRestClientProvider client, ElasticConfiguration cfg, String indexName) {
+    this(
+        cfg,
+        indexName,
+        (endpoint, search, params) -> send(client, endpoint, search, params),
+        Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  ElasticPagePrefetcher(ElasticConfiguration cfg, String indexName, Sender sender, Ticker ticker) {
+    this.indexName = indexName;
+    this.sender = sender;
+    this.prefetches =
+        cfg.prefetchNextPage
+            ? CacheBuilder.newBuilder()
+                .maximumSize(MAX_PENDING_PREFETCHES)
+                .expireAfterWrite(PREFETCH_EXPIRY_SECONDS, SECONDS)
+                .ticker(ticker)
+                .<String, Future<JsonObject>>removalListener(
+                    n -> {
+                      if (n.getCause() != RemovalCause.EXPLICIT
+                          && n.getCause() != RemovalCause.REPLACED) {
+                        n.getValue().cancel(true);
+                      }
+                    })
+                .build()
+            : null;
+  }
+
+  boolean isEnabled() {
+    return prefetches != null;
+  }
+
+  /**
+   * Returns the search for the page following the given one, as it is sent by the query source of
+   * that page.
+   *
+   * @param searchSource the search of the current page, including its sort
+   * @param lastSortValues the sort values of the last hit of the current page
+   */
+  static String nextPageSearch(SearchSourceBuilder searchSource, JsonArray lastSortValues) {
+    return searchSource.copy().from(-1).searchAfter(lastSortValues).toString();
+  }
+
+  /** Starts a search in the background. */
+  void prefetch(String uri, String search, Map<String, String> params) {
+    if (prefetches == null) {
+      return;
+    }
+    String endpoint = uri.startsWith("/") ? uri : "/" + uri;
+    prefetches.put(key(search, params), sender.send(endpoint, search, params));
+  }
+
+  /**
+   * Returns the response of a prefetched search, waiting for it if it is still running.
+   *
+   * @return the response, or {@code null} if the search was not prefetched or the prefetch failed
+   */
+  @Nullable
+  JsonObject take(String search, Map<String, String> params) {
+    if (prefetches == null) {
+      return null;
+    }
+    Future<JsonObject> response = prefetches.asMap().remove(key(search, params));
+    if (response == null) {
+      return null;
+    }
+    try {
+      return Uninterruptibles.getUninterruptibly(response);
+    } catch (ExecutionException | RuntimeException e) {
+      logger.atFine().withCause(e).log(
+          "Prefetched search on index %s failed, searching again", indexName);
+      return null;
+    }
+  }
+
+  private static String key(String search, Map<String, String> params) {
+    return params + search;
+  }
+
+  private static Future<JsonObject> send(
+      ElasticRestClientProvider client,
+      String endpoint,
+      String search,
+      Map<String, String> params) {
+    Request request = new Request(HttpPost.METHOD_NAME, endpoint);
+    request.setEntity(new NStringEntity(search, ContentType.APPLICATION_JSON));
+    params.forEach(request::addParameter);
+    SettableFuture<Response> response = SettableFuture.create();
+    Cancellable cancellable =
+        client
+            .get()
+            .performRequestAsync(
+                request,
+                new ResponseListener() {
+                  @Override
+                  public void onSuccess(Response r) {
+                    response.set(r);
+                  }
+
+                  @Override
+                  public void onFailure(Exception e) {
+                    response.setException(e);
+                  }
+                });
+    response.addListener(
+        () -> {
+          if (response.isCancelled()) {
+            cancellable.cancel();
+          }
+        },
+        MoreExecutors.directExecutor());
+    // Parse the response on the thread that takes it rather than on the I/O thread.
+    return Futures.lazyTransform(response, ElasticPagePrefetcher::parse);
+  }
+
+  private static JsonObject parse(Response response) {
+    try {
+      return AbstractElasticIndex.parseSearchContent(response);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
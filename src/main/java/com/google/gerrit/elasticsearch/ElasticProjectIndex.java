@@ -50,8 +50,9 @@ public class ElasticProjectIndex extends AbstractElasticIndex<Project.NameKey, P
   static class ProjectMapping {
     Mapping projects;
 
-    ProjectMapping(Schema<ProjectData> schema, ElasticQueryAdapter adapter) {
-      this.projects = ElasticMapping.createMapping(schema, adapter);
+    ProjectMapping(
+        Schema<ProjectData> schema, ElasticQueryAdapter adapter, ElasticConfiguration cfg) {
+      this.projects = ElasticMapping.createMapping(schema, adapter, cfg);
     }
   }
 
@@ -64,15 +65,30 @@ public class ElasticProjectIndex extends AbstractElasticIndex<Project.NameKey, P
   @Inject
   ElasticProjectIndex(
       ElasticConfiguration cfg,
+      ElasticMetrics metrics,
+      ElasticSearchPreference searchPreference,
+      ElasticCurrentUser currentUser,
+      ElasticExecutor executor,
       SitePaths sitePaths,
       Provider<ProjectCache> projectCache,
       ElasticRestClientProvider client,
       AutoFlush autoFlush,
       @Assisted Schema<ProjectData> schema) {
-    super(cfg, sitePaths, schema, client, PROJECTS, autoFlush, ProjectIndex.ENTITY_TO_KEY);
+    super(
+        cfg,
+        metrics,
+        searchPreference,
+        currentUser,
+        executor,
+        sitePaths,
+        schema,
+        client,
+        PROJECTS,
+        autoFlush,
+        ProjectIndex.ENTITY_TO_KEY);
     this.projectCache = projectCache;
     this.schema = schema;
-    this.mapping = new ProjectMapping(schema, client.adapter());
+    this.mapping = new ProjectMapping(schema, client.adapter(), cfg);
   }
 
   @Override
@@ -99,6 +115,16 @@ public class ElasticProjectIndex extends AbstractElasticIndex<Project.NameKey, P
     return new ElasticQuerySource(p, opts.filterFields(IndexUtils::projectFields), sortArray);
   }
 
+  @Override
+  protected String getIdField() {
+    return ProjectField.NAME_SPEC.getName();
+  }
+
+  @Override
+  protected boolean isSortedById() {
+    return true;
+  }
+
   @Override
   protected String getDeleteActions(Project.NameKey nameKey) {
     return getDeleteRequest(nameKey);
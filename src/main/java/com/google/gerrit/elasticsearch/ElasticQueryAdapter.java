@@ -23,8 +23,14 @@ public class ElasticQueryAdapter {
   private final String indexProperty;
   private final String rawFieldsKey;
   private final String versionDiscoveryUrl;
+  private final boolean supportsWildcardFields;
 
   ElasticQueryAdapter() {
+    this(true);
+  }
+
+  ElasticQueryAdapter(boolean supportsWildcardFields) {
+    this.supportsWildcardFields = supportsWildcardFields;
     this.versionDiscoveryUrl = "/%s*";
     this.searchFilteringName = "_source";
     this.exactFieldType = "keyword";
@@ -57,6 +63,11 @@ public class ElasticQueryAdapter {
     return rawFieldsKey;
   }
 
+  /** Whether the {@code wildcard} field type exists, which was added in Elasticsearch 7.9. */
+  boolean supportsWildcardFields() {
+    return supportsWildcardFields;
+  }
+
   String getVersionDiscoveryUrl(String name) {
     return String.format(versionDiscoveryUrl, name);
   }
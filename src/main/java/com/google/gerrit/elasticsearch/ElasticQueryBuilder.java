@@ -14,6 +14,9 @@
 
 package com.google.gerrit.elasticsearch;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.elasticsearch.builders.BoolQueryBuilder;
 import com.google.gerrit.elasticsearch.builders.QueryBuilder;
 import com.google.gerrit.elasticsearch.builders.QueryBuilders;
@@ -29,8 +32,39 @@ import com.google.gerrit.index.query.Predicate;
 import com.google.gerrit.index.query.QueryParseException;
 import com.google.gerrit.index.query.RegexPredicate;
 import com.google.gerrit.index.query.TimestampRangePredicate;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.BooleanSupplier;
 
 public class ElasticQueryBuilder {
+  private final BooleanSupplier wildcardSubfields;
+  private final boolean acceleratePrefixQueries;
+  private final int regexMinPrefixLength;
+  private final int regexMaxComplexity;
+  private final ElasticRegexCost.Action expensiveRegexAction;
+
+  ElasticQueryBuilder(ElasticConfiguration config) {
+    this(config, () -> config.accelerateRegexQueries);
+  }
+
+  /**
+   * @param wildcardSubfields whether the exact-match fields of the index have a wildcard subfield,
+   *     see {@link ElasticMapping#META_WILDCARD_SUBFIELDS}
+   */
+  ElasticQueryBuilder(ElasticConfiguration config, BooleanSupplier wildcardSubfields) {
+    this.wildcardSubfields = wildcardSubfields;
+    this.acceleratePrefixQueries = config.acceleratePrefixQueries;
+    this.regexMinPrefixLength = config.regexMinPrefixLength;
+    this.regexMaxComplexity = config.regexMaxComplexity;
+    this.expensiveRegexAction = config.expensiveRegexAction;
+  }
 
   <T> QueryBuilder toQueryBuilder(Predicate<T> p) throws QueryParseException {
     if (p instanceof AndPredicate) {
@@ -39,30 +73,143 @@ public class ElasticQueryBuilder {
       return or(p);
     } else if (p instanceof NotPredicate) {
       return not(p);
-    } else if (p instanceof Predicate.Any) {
+    } else if (isMatchAll(p)) {
       return QueryBuilders.matchAllQuery();
     } else if (p instanceof IndexPredicate) {
       return fieldQuery((IndexPredicate<T>) p);
-    } else if (p instanceof PostFilterPredicate) {
-      return QueryBuilders.matchAllQuery();
     } else {
       throw new QueryParseException("cannot create query for index: " + p);
     }
   }
 
-  private <T> BoolQueryBuilder and(Predicate<T> p) throws QueryParseException {
-    BoolQueryBuilder b = QueryBuilders.boolQuery();
-    for (Predicate<T> c : p.getChildren()) {
-      b.filter(toQueryBuilder(c));
+  /**
+   * Returns the values of which the field has one in every document matching {@code p}, or null
+   * if {@code p} does not restrict the field to a known set of values.
+   */
+  @Nullable
+  <T> Set<String> requiredValues(Predicate<T> p, String fieldName) {
+    if (p instanceof AndPredicate) {
+      Set<String> result = null;
+      for (Predicate<T> c : p.getChildren()) {
+        Set<String> values = requiredValues(c, fieldName);
+        if (values != null) {
+          if (result == null) {
+            result = new LinkedHashSet<>(values);
+          } else {
+            result.retainAll(values);
+          }
+        }
+      }
+      return result;
+    } else if (p instanceof OrPredicate) {
+      Set<String> result = new LinkedHashSet<>();
+      for (Predicate<T> c : p.getChildren()) {
+        Set<String> values = requiredValues(c, fieldName);
+        if (values == null) {
+          return null;
+        }
+        result.addAll(values);
+      }
+      return result;
+    }
+    String value = termValue(p);
+    if (value != null && ((IndexPredicate<T>) p).getField().getName().equals(fieldName)) {
+      return ImmutableSet.of(value);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the values in ascending order if {@code p} matches exactly the documents that have one
+   * of them in the field, or null if {@code p} is not such a lookup.
+   */
+  @Nullable
+  <T> SortedSet<String> lookupValues(Predicate<T> p, String fieldName) {
+    Set<Predicate<T>> terms =
+        p instanceof OrPredicate ? flatten(p, OrPredicate.class) : ImmutableSet.of(p);
+    SortedSet<String> values = new TreeSet<>();
+    for (Predicate<T> t : terms) {
+      String value = termValue(t);
+      if (value == null || !((IndexPredicate<T>) t).getField().getName().equals(fieldName)) {
+        return null;
+      }
+      values.add(value);
+    }
+    return values;
+  }
+
+  private <T> QueryBuilder and(Predicate<T> p) throws QueryParseException {
+    List<QueryBuilder> filters = new ArrayList<>();
+    List<QueryBuilder> mustNots = new ArrayList<>();
+    Map<String, List<IntegerRangePredicate<T>>> intRanges = new LinkedHashMap<>();
+    Map<String, List<TimestampRangePredicate<T>>> timestampRanges = new LinkedHashMap<>();
+    for (Predicate<T> c : flatten(p, AndPredicate.class)) {
+      if (isMatchAll(c)) {
+        continue;
+      } else if (c instanceof NotPredicate && !(c.getChild(0) instanceof TimestampRangePredicate)) {
+        // Negations are subtracted from the enclosing query instead of from match_all.
+        mustNots.add(toQueryBuilder(c.getChild(0)));
+      } else if (c instanceof IntegerRangePredicate
+          && ((IntegerRangePredicate<T>) c).getType() == FieldType.INTEGER_RANGE) {
+        IntegerRangePredicate<T> r = (IntegerRangePredicate<T>) c;
+        intRanges.computeIfAbsent(r.getField().getName(), k -> new ArrayList<>()).add(r);
+      } else if (c instanceof TimestampRangePredicate
+          && ((TimestampRangePredicate<T>) c).getType() == FieldType.TIMESTAMP) {
+        TimestampRangePredicate<T> r = (TimestampRangePredicate<T>) c;
+        timestampRanges.computeIfAbsent(r.getField().getName(), k -> new ArrayList<>()).add(r);
+      } else {
+        filters.add(toQueryBuilder(c));
+      }
+    }
+    for (Map.Entry<String, List<IntegerRangePredicate<T>>> e : intRanges.entrySet()) {
+      filters.add(intRangeQuery(e.getKey(), e.getValue()));
     }
+    for (Map.Entry<String, List<TimestampRangePredicate<T>>> e : timestampRanges.entrySet()) {
+      filters.add(timestampRangeQuery(e.getKey(), e.getValue()));
+    }
+
+    if (mustNots.isEmpty()) {
+      if (filters.isEmpty()) {
+        return QueryBuilders.matchAllQuery();
+      } else if (filters.size() == 1) {
+        return filters.get(0);
+      }
+    }
+    BoolQueryBuilder b = QueryBuilders.boolQuery();
+    filters.forEach(b::filter);
+    mustNots.forEach(b::mustNot);
     return b;
   }
 
-  private <T> BoolQueryBuilder or(Predicate<T> p) throws QueryParseException {
-    BoolQueryBuilder q = QueryBuilders.boolQuery();
-    for (Predicate<T> c : p.getChildren()) {
-      q.should(toQueryBuilder(c));
+  private <T> QueryBuilder or(Predicate<T> p) throws QueryParseException {
+    List<QueryBuilder> shoulds = new ArrayList<>();
+    Map<String, Set<String>> terms = new LinkedHashMap<>();
+    for (Predicate<T> c : flatten(p, OrPredicate.class)) {
+      if (isMatchAll(c)) {
+        return QueryBuilders.matchAllQuery();
+      }
+      String term = termValue(c);
+      if (term != null) {
+        // Disjunctions of terms on the same field are sent as a single terms query.
+        String name = ((IndexPredicate<T>) c).getField().getName();
+        terms.computeIfAbsent(name, k -> new LinkedHashSet<>()).add(term);
+      } else {
+        shoulds.add(toQueryBuilder(c));
+      }
     }
+    for (Map.Entry<String, Set<String>> e : terms.entrySet()) {
+      Set<String> values = e.getValue();
+      shoulds.add(
+          values.size() == 1
+              ? QueryBuilders.termQuery(e.getKey(), Iterables.getOnlyElement(values))
+              : QueryBuilders.termsQuery(e.getKey(), values));
+    }
+
+    if (shoulds.size() == 1) {
+      return shoulds.get(0);
+    }
+    BoolQueryBuilder q = QueryBuilders.boolQuery();
+    shoulds.forEach(q::should);
     return q;
   }
 
@@ -70,13 +217,61 @@ public class ElasticQueryBuilder {
     Predicate<T> n = p.getChild(0);
     if (n instanceof TimestampRangePredicate) {
       return notTimestamp((TimestampRangePredicate<T>) n);
+    } else if (n instanceof NotPredicate) {
+      return toQueryBuilder(n.getChild(0));
     }
 
-    // Lucene does not support negation, start with all and subtract.
-    BoolQueryBuilder q = QueryBuilders.boolQuery();
-    q.filter(QueryBuilders.matchAllQuery());
-    q.mustNot(toQueryBuilder(n));
-    return q;
+    // A bool query with only must_not clauses subtracts them from all documents.
+    return QueryBuilders.boolQuery().mustNot(toQueryBuilder(n));
+  }
+
+  /**
+   * Returns the children of {@code p}, replacing children of the same type with their own
+   * children, and dropping duplicates.
+   */
+  private static <T> Set<Predicate<T>> flatten(Predicate<T> p, Class<?> type) {
+    Set<Predicate<T>> result = new LinkedHashSet<>();
+    flatten(p, type, result);
+    return result;
+  }
+
+  private static <T> void flatten(Predicate<T> p, Class<?> type, Set<Predicate<T>> result) {
+    for (Predicate<T> c : p.getChildren()) {
+      if (type.isInstance(c)) {
+        flatten(c, type, result);
+      } else {
+        result.add(c);
+      }
+    }
+  }
+
+  private static <T> boolean isMatchAll(Predicate<T> p) {
+    return p instanceof Predicate.Any || p instanceof PostFilterPredicate;
+  }
+
+  /**
+   * Returns the value of the term {@code p} is translated to, or null if {@code p} is not
+   * translated to a single term query.
+   */
+  @Nullable
+  private static <T> String termValue(Predicate<T> p) {
+    if (!(p instanceof IndexPredicate) || p instanceof RegexPredicate) {
+      return null;
+    }
+    IndexPredicate<T> ip = (IndexPredicate<T>) p;
+    FieldType<?> type = ip.getType();
+    if (type == FieldType.INTEGER) {
+      return ip.getValue();
+    } else if (type == FieldType.EXACT
+        && (ip.getField().isRepeatable() || !ip.getValue().isEmpty())) {
+      return ip.getValue();
+    } else if (type == FieldType.INTEGER_RANGE && p instanceof IntegerRangePredicate) {
+      IntegerRangePredicate<T> r = (IntegerRangePredicate<T>) p;
+      if (r.getMinimumValue() == r.getMaximumValue()) {
+        return String.valueOf(r.getMinimumValue());
+      }
+    }
+    return null;
   }
 
   private <T> QueryBuilder fieldQuery(IndexPredicate<T> p) throws QueryParseException {
@@ -97,6 +292,11 @@ public class ElasticQueryBuilder {
     } else if (type == FieldType.EXACT) {
       return exactQuery(p);
     } else if (type == FieldType.PREFIX) {
+      if (acceleratePrefixQueries) {
+        // The keyword tokenizer indexes the whole value as a single term, so a prefix query on
+        // the term is equivalent to the phrase prefix query and can use the indexed prefixes.
+        return QueryBuilders.prefixQuery(name, value);
+      }
       return QueryBuilders.matchPhrasePrefixQuery(name, value);
     } else if (type == FieldType.FULL_TEXT) {
       return QueryBuilders.matchPhraseQuery(name, value);
@@ -108,17 +308,30 @@ public class ElasticQueryBuilder {
   private <T> QueryBuilder intRangeQuery(IndexPredicate<T> p) throws QueryParseException {
     if (p instanceof IntegerRangePredicate) {
       IntegerRangePredicate<T> r = (IntegerRangePredicate<T>) p;
-      int minimum = r.getMinimumValue();
-      int maximum = r.getMaximumValue();
-      if (minimum == maximum) {
-        // Just fall back to a standard integer query.
-        return QueryBuilders.termQuery(p.getField().getName(), minimum);
-      }
-      return QueryBuilders.rangeQuery(p.getField().getName()).gte(minimum).lte(maximum);
+      return intRangeQuery(p.getField().getName(), r.getMinimumValue(), r.getMaximumValue());
     }
     throw new QueryParseException("not an integer range: " + p);
   }
 
+  private <T> QueryBuilder intRangeQuery(String name, List<IntegerRangePredicate<T>> ranges) {
+    // Overlapping ranges on the same field are merged into their intersection.
+    int minimum = Integer.MIN_VALUE;
+    int maximum = Integer.MAX_VALUE;
+    for (IntegerRangePredicate<T> r : ranges) {
+      minimum = Math.max(minimum, r.getMinimumValue());
+      maximum = Math.min(maximum, r.getMaximumValue());
+    }
+    return intRangeQuery(name, minimum, maximum);
+  }
+
+  private QueryBuilder intRangeQuery(String name, int minimum, int maximum) {
+    if (minimum == maximum) {
+      // Just fall back to a standard integer query.
+      return QueryBuilders.termQuery(name, minimum);
+    }
+    return QueryBuilders.rangeQuery(name).gte(minimum).lte(maximum);
+  }
+
   private <T> QueryBuilder notTimestamp(TimestampRangePredicate<T> r) throws QueryParseException {
     if (r.getMinTimestamp().toEpochMilli() == 0) {
       return QueryBuilders.rangeQuery(r.getField().getName()).gt(r.getMaxTimestamp());
@@ -129,34 +342,95 @@ public class ElasticQueryBuilder {
   private <T> QueryBuilder timestampQuery(IndexPredicate<T> p) throws QueryParseException {
     if (p instanceof TimestampRangePredicate) {
       TimestampRangePredicate<T> r = (TimestampRangePredicate<T>) p;
-      if (r.getMaxTimestamp().toEpochMilli() == Long.MAX_VALUE) {
-        // The time range only has the start value, search from the start to the max supported value
-        // Long.MAX_VALUE
-        return QueryBuilders.rangeQuery(r.getField().getName()).gte(r.getMinTimestamp());
-      }
-      return QueryBuilders.rangeQuery(r.getField().getName())
-          .gte(r.getMinTimestamp())
-          .lte(r.getMaxTimestamp());
+      return timestampRangeQuery(r.getField().getName(), r.getMinTimestamp(), r.getMaxTimestamp());
     }
     throw new QueryParseException("not a timestamp: " + p);
   }
 
-  private <T> QueryBuilder exactQuery(IndexPredicate<T> p) {
+  private <T> QueryBuilder timestampRangeQuery(
+      String name, List<TimestampRangePredicate<T>> ranges) {
+    // Overlapping ranges on the same field are merged into their intersection.
+    Instant min = ranges.get(0).getMinTimestamp();
+    Instant max = ranges.get(0).getMaxTimestamp();
+    for (TimestampRangePredicate<T> r : ranges) {
+      if (r.getMinTimestamp().isAfter(min)) {
+        min = r.getMinTimestamp();
+      }
+      if (r.getMaxTimestamp().isBefore(max)) {
+        max = r.getMaxTimestamp();
+      }
+    }
+    return timestampRangeQuery(name, min, max);
+  }
+
+  private QueryBuilder timestampRangeQuery(String name, Instant min, Instant max) {
+    if (max.toEpochMilli() == Long.MAX_VALUE) {
+      // The time range only has the start value, search from the start to the max supported value
+      // Long.MAX_VALUE
+      return QueryBuilders.rangeQuery(name).gte(min);
+    }
+    return QueryBuilders.rangeQuery(name).gte(min).lte(max);
+  }
+
+  private <T> QueryBuilder exactQuery(IndexPredicate<T> p) throws QueryParseException {
     String name = p.getField().getName();
     String value = p.getValue();
 
     if (!p.getField().isRepeatable() && value.isEmpty()) {
       return new BoolQueryBuilder().mustNot(QueryBuilders.existsQuery(name));
     } else if (p instanceof RegexPredicate) {
-      if (value.startsWith("^")) {
-        value = value.substring(1);
+      value = regex(value);
+      if (wildcardSubfields.getAsBoolean()) {
+        name = name + "." + ElasticMapping.WILDCARD_SUBFIELD;
       }
-      if (value.endsWith("$") && !value.endsWith("\\$") && !value.endsWith("\\\\$")) {
-        value = value.substring(0, value.length() - 1);
+      ElasticRegexCost cost = ElasticRegexCost.of(value);
+      if (cost.isPrefixOnly()) {
+        return QueryBuilders.prefixQuery(name, cost.literalPrefix());
+      }
+      if (expensiveRegexAction == ElasticRegexCost.Action.REJECT && isExpensive(cost)) {
+        throw new QueryParseException("regular expression is too expensive: " + p.getValue());
       }
       return QueryBuilders.regexpQuery(name, value);
     } else {
       return QueryBuilders.termQuery(name, value);
     }
   }
+
+  /** Strips the anchors of a regular expression, which Elasticsearch always applies. */
+  private static String regex(String value) {
+    if (value.startsWith("^")) {
+      value = value.substring(1);
+    }
+    if (value.endsWith("$") && !value.endsWith("\\$") && !value.endsWith("\\\\$")) {
+      value = value.substring(0, value.length() - 1);
+    }
+    return value;
+  }
+
+  /**
+   * Whether {@code p} contains a regular expression that is expensive according to {@code
+   * elasticsearch.regexMinPrefixLength} and {@code elasticsearch.regexMaxComplexity}.
+   */
+  <T> boolean isExpensive(Predicate<T> p) {
+    if (p instanceof RegexPredicate) {
+      return isExpensive(ElasticRegexCost.of(regex(((RegexPredicate<T>) p).getValue())));
+    }
+    for (Predicate<T> c : p.getChildren()) {
+      if (isExpensive(c)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isExpensive(ElasticRegexCost cost) {
+    if (cost.isPrefixOnly()) {
+      return false;
+    }
+    // The wildcard subfield does not need a literal prefix to avoid scanning all terms.
+    if (!wildcardSubfields.getAsBoolean() && cost.literalPrefix().length() < regexMinPrefixLength) {
+      return true;
+    }
+    return regexMaxComplexity > 0 && cost.complexity() > regexMaxComplexity;
+  }
 }
@@ -0,0 +1,153 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gerrit.entities.Account;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Refreshes an index before a search, if it was written since the last refresh, when writes are
+ * not refreshed immediately.
+ *
+ * <p>Every write increments a write generation. A search that must see the writes refreshes the
+ * index up to the current generation, unless a concurrent search already did. Searches waiting
+ * for a refresh in progress wait for it instead of starting another one, so that a burst of
+ * writes is made visible by a single refresh.
+ */
+class ElasticRefresher {
+  enum Mode {
+    /** Every write is refreshed immediately. */
+    IMMEDIATE,
+    /** Writes are refreshed by the next search that must see them. */
+    ON_SEARCH
+  }
+
+  enum Scope {
+    /** Searches must see all writes. */
+    ALL,
+    /** Searches must see the writes done on behalf of the same user. */
+    USER
+  }
+
+  private final Mode mode;
+  private final Scope scope;
+  private final boolean refreshOnWrite;
+  private final ElasticCurrentUser currentUser;
+  private final Runnable refresh;
+  private final AtomicLong writeGeneration = new AtomicLong();
+  private final AtomicLong unattributedWriteGeneration = new AtomicLong();
+  private final Cache<Account.Id, Long> userWriteGenerations =
+      CacheBuilder.newBuilder().expireAfterWrite(1, MINUTES).build();
+  private final Object refreshLock = new Object();
+  private volatile long refreshedGeneration;
+
+  /**
+   * @param autoFlush whether writes are meant to be visible right away, which is not the case
+   *     while reindexing
+   */
+  ElasticRefresher(
+      ElasticConfiguration cfg,
+      boolean autoFlush,
+      ElasticCurrentUser currentUser,
+      Runnable refresh) {
+    this.mode = cfg.refreshMode;
+    this.scope = cfg.refreshScope;
+    this.refreshOnWrite = autoFlush && mode == Mode.IMMEDIATE;
+    this.currentUser = currentUser;
+    this.refresh = refresh;
+  }
+
+  /** Whether writes must ask Elasticsearch to refresh the index immediately. */
+  boolean refreshOnWrite() {
+    return refreshOnWrite;
+  }
+
+  void written() {
+    if (refreshOnWrite) {
+      return;
+    }
+    long generation = writeGeneration.incrementAndGet();
+    if (scope == Scope.USER) {
+      Account.Id accountId = currentUser.getAccountId();
+      if (accountId != null) {
+        userWriteGenerations.asMap().merge(accountId, generation, Math::max);
+      } else {
+        // Writes of background and asynchronous indexing must be seen by all searches.
+        unattributedWriteGeneration.accumulateAndGet(generation, Math::max);
+      }
+    }
+  }
+
+  /**
+   * Refreshes the index if a search of the current user must see writes not refreshed yet.
+   *
+   * @return whether such writes were pending, in which case results read before the call may be
+   *     outdated
+   */
+  boolean refreshIfNeeded() {
+    if (mode == Mode.IMMEDIATE) {
+      return false;
+    }
+    return refreshUpTo(requiredGeneration());
+  }
+
+  /**
+   * Refreshes the index if any write is not refreshed yet, whatever the scope. Needed before
+   * operations that must see every document, e.g. deleting by query, which only matches refreshed
+   * documents.
+   */
+  void refreshAllIfNeeded() {
+    if (refreshOnWrite) {
+      return;
+    }
+    refreshUpTo(writeGeneration.get());
+  }
+
+  private boolean refreshUpTo(long required) {
+    if (required <= refreshedGeneration) {
+      return false;
+    }
+    synchronized (refreshLock) {
+      if (required <= refreshedGeneration) {
+        // Refreshed by another search while waiting for the lock.
+        return true;
+      }
+      // Writes done while refreshing may not be included, so only cover the ones done before.
+      long generation = writeGeneration.get();
+      refresh.run();
+      refreshedGeneration = generation;
+      return true;
+    }
+  }
+
+  private long requiredGeneration() {
+    if (scope == Scope.ALL) {
+      return writeGeneration.get();
+    }
+    long required = unattributedWriteGeneration.get();
+    Account.Id accountId = currentUser.getAccountId();
+    if (accountId != null) {
+      Long generation = userWriteGenerations.getIfPresent(accountId);
+      if (generation != null) {
+        required = Math.max(required, generation);
+      }
+    }
+    return required;
+  }
+}
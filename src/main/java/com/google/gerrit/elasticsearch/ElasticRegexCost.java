@@ -0,0 +1,129 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+/**
+ * Estimates the cost of an Elasticsearch {@code regexp} query from its regular expression.
+ *
+ * <p>A {@code regexp} query intersects an automaton built from the expression with the term
+ * dictionary of the field. The literal prefix of the expression lets it seek directly to the
+ * matching terms, while an expression without one, e.g. {@code .*foo}, visits every term. The
+ * repetition and alternation operators determine how large the automaton gets.
+ */
+class ElasticRegexCost {
+  /** What to do with searches for regular expressions that are classified as expensive. */
+  enum Action {
+    /** Fail the query. */
+    REJECT,
+    /**
+     * Run the search with {@code elasticsearch.expensiveRegexTimeout} and at most {@code
+     * elasticsearch.expensiveRegexConcurrency} such searches at a time.
+     */
+    LIMIT
+  }
+
+  /** Operators of the Lucene regular expression syntax. */
+  private static final String OPERATORS = ".?+*|{}[]()\"\\#@&<>~";
+
+  private final String literalPrefix;
+  private final int complexity;
+  private final boolean prefixOnly;
+
+  private ElasticRegexCost(String literalPrefix, int complexity, boolean prefixOnly) {
+    this.literalPrefix = literalPrefix;
+    this.complexity = complexity;
+    this.prefixOnly = prefixOnly;
+  }
+
+  static ElasticRegexCost of(String regex) {
+    boolean topLevelAlternation = false;
+    int complexity = 0;
+    int depth = 0;
+    boolean inClass = false;
+    for (int i = 0; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (inClass) {
+        inClass = c != ']';
+      } else if (c == '[') {
+        inClass = true;
+      } else if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+      } else if (c == '*' || c == '+' || c == '{') {
+        complexity++;
+      } else if (c == '|') {
+        complexity++;
+        topLevelAlternation |= depth == 0;
+      }
+    }
+    if (topLevelAlternation) {
+      return new ElasticRegexCost("", complexity, false);
+    }
+
+    StringBuilder prefix = new StringBuilder();
+    int i = 0;
+    while (i < regex.length()) {
+      char c = regex.charAt(i);
+      int next;
+      if (c == '\\') {
+        if (i + 1 >= regex.length()) {
+          break;
+        }
+        c = regex.charAt(i + 1);
+        next = i + 2;
+      } else if (OPERATORS.indexOf(c) >= 0) {
+        break;
+      } else {
+        next = i + 1;
+      }
+      if (next < regex.length()) {
+        char op = regex.charAt(next);
+        if (op == '?' || op == '*' || op == '{') {
+          // The character is optional or repeated, so it is not part of every match.
+          break;
+        } else if (op == '+') {
+          prefix.append(c);
+          break;
+        }
+      }
+      prefix.append(c);
+      i = next;
+    }
+    boolean prefixOnly =
+        prefix.length() > 0 && regex.length() == i + 2 && regex.startsWith(".*", i);
+    return new ElasticRegexCost(prefix.toString(), complexity, prefixOnly);
+  }
+
+  /** The characters that every match starts with. */
+  String literalPrefix() {
+    return literalPrefix;
+  }
+
+  /** The number of repetition and alternation operators. */
+  int complexity() {
+    return complexity;
+  }
+
+  /**
+   * Whether the expression matches exactly the values starting with {@link #literalPrefix()}, so
+   * that it can be run as a cheaper {@code prefix} query.
+   */
+  boolean isPrefixOnly() {
+    return prefixOnly;
+  }
+}
@@ -0,0 +1,169 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.elasticsearch.builders.XContentBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Parses response bodies with the streaming parser of the shared {@link
+ * XContentBuilder#jsonFactory()}.
+ *
+ * <p>Responses of searches, multi searches, multi gets and scrolls are reduced while they are
+ * read: of every hit or document, only the parts read by the index are kept, see {@link
+ * #HIT_FIELDS}. The metadata of hits, e.g. their index, score and version, is skipped without being
+ * materialized. The result is still a Gson tree, since documents are handed to the field mappers
+ * and {@link ElasticStoredValue} as such.
+ */
+final class ElasticResponseParser {
+  /** Fields of a search hit or of a multi get document that are read. */
+  private static final ImmutableSet<String> HIT_FIELDS =
+      ImmutableSet.of("_source", "fields", "sort", "found");
+
+  /** Parses a JSON object, keeping all of it. */
+  static JsonObject parse(InputStream in) throws IOException {
+    try (JsonParser parser = XContentBuilder.jsonFactory().createParser(in)) {
+      expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+      return readObject(parser);
+    }
+  }
+
+  /**
+   * Parses the response of a search, multi search, multi get or scroll, keeping only the {@link
+   * #HIT_FIELDS} of its hits or documents.
+   */
+  static JsonObject parseSearch(InputStream in) throws IOException {
+    try (JsonParser parser = XContentBuilder.jsonFactory().createParser(in)) {
+      expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+      return readSearch(parser);
+    }
+  }
+
+  private static JsonObject readSearch(JsonParser parser) throws IOException {
+    JsonObject response = new JsonObject();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.currentName();
+      JsonToken token = parser.nextToken();
+      if (token == JsonToken.START_OBJECT && name.equals("hits")) {
+        response.add(name, readHits(parser));
+      } else if (token == JsonToken.START_ARRAY && name.equals("docs")) {
+        response.add(name, readHitArray(parser));
+      } else if (token == JsonToken.START_ARRAY && name.equals("responses")) {
+        JsonArray responses = new JsonArray();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+          responses.add(readSearch(parser));
+        }
+        response.add(name, responses);
+      } else {
+        response.add(name, readValue(parser, token));
+      }
+    }
+    return response;
+  }
+
+  private static JsonObject readHits(JsonParser parser) throws IOException {
+    JsonObject hits = new JsonObject();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.currentName();
+      JsonToken token = parser.nextToken();
+      hits.add(
+          name,
+          token == JsonToken.START_ARRAY && name.equals("hits")
+              ? readHitArray(parser)
+              : readValue(parser, token));
+    }
+    return hits;
+  }
+
+  private static JsonArray readHitArray(JsonParser parser) throws IOException {
+    JsonArray hits = new JsonArray();
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+      JsonObject hit = new JsonObject();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.currentName();
+        JsonToken token = parser.nextToken();
+        if (HIT_FIELDS.contains(name)) {
+          hit.add(name, readValue(parser, token));
+        } else {
+          parser.skipChildren();
+        }
+      }
+      hits.add(hit);
+    }
+    return hits;
+  }
+
+  private static JsonObject readObject(JsonParser parser) throws IOException {
+    JsonObject object = new JsonObject();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.currentName();
+      object.add(name, readValue(parser, parser.nextToken()));
+    }
+    return object;
+  }
+
+  private static JsonElement readValue(JsonParser parser, JsonToken token) throws IOException {
+    if (token == null) {
+      throw new IOException("Unexpected end of content");
+    }
+    switch (token) {
+      case START_OBJECT:
+        return readObject(parser);
+      case START_ARRAY:
+        JsonArray array = new JsonArray();
+        for (JsonToken t = parser.nextToken(); t != JsonToken.END_ARRAY; t = parser.nextToken()) {
+          array.add(readValue(parser, t));
+        }
+        return array;
+      case VALUE_STRING:
+        return new JsonPrimitive(parser.getText());
+      case VALUE_NUMBER_INT:
+        return new JsonPrimitive(parser.getNumberValue());
+      case VALUE_NUMBER_FLOAT:
+        return new JsonPrimitive(parser.getDecimalValue());
+      case VALUE_TRUE:
+        return new JsonPrimitive(true);
+      case VALUE_FALSE:
+        return new JsonPrimitive(false);
+      case VALUE_NULL:
+        return JsonNull.INSTANCE;
+      default:
+        throw new IOException(
+            String.format("Unexpected %s at %s", token, parser.currentLocation()));
+    }
+  }
+
+  private static void expect(JsonParser parser, JsonToken actual, JsonToken expected)
+      throws IOException {
+    if (actual != expected) {
+      throw new IOException(
+          String.format(
+              "Expected %s but was %s at %s", expected, actual, parser.currentLocation()));
+    }
+  }
+
+  private ElasticResponseParser() {}
+}
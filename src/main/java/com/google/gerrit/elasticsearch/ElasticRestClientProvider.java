@@ -67,9 +67,16 @@ class ElasticRestClientProvider implements Provider<RestClient>, LifecycleListen
       synchronized (this) {
         if (client == null) {
           client = build();
-          ElasticVersion version = getVersion();
+          String versionNumber = getVersionNumber();
+          ElasticVersion version = ElasticVersion.forVersion(versionNumber);
           logger.atInfo().log("Elasticsearch integration version %s", version);
-          adapter = new ElasticQueryAdapter();
+          boolean supportsWildcardFields = ElasticVersion.isAtLeast(versionNumber, 7, 9);
+          if (cfg.accelerateRegexQueries && !supportsWildcardFields) {
+            logger.atWarning().log(
+                "Ignoring elasticsearch.accelerateRegexQueries, which requires Elasticsearch 7.9"
+                    + " or later");
+          }
+          adapter = new ElasticQueryAdapter(supportsWildcardFields);
         }
       }
     }
@@ -108,7 +115,7 @@ class ElasticRestClientProvider implements Provider<RestClient>, LifecycleListen
     }
   }
 
-  private ElasticVersion getVersion() throws ElasticException {
+  private String getVersionNumber() throws ElasticException {
     try {
       Response response = client.performRequest(new Request("GET", "/"));
       StatusLine statusLine = response.getStatusLine();
@@ -123,7 +130,7 @@ class ElasticRestClientProvider implements Provider<RestClient>, LifecycleListen
               .get("number")
               .getAsString();
       logger.atInfo().log("Connected to Elasticsearch version %s", version);
-      return ElasticVersion.forVersion(version);
+      return version;
     } catch (IOException e) {
       throw new FailedToGetVersion(e);
     }
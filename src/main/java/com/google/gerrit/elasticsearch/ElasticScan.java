@@ -0,0 +1,100 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Reads all hits of a search with a sliced scroll, reading the slices concurrently on the shared
+ * executor of the indexes.
+ */
+class ElasticScan {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** Requests of a scroll, sent by the index. */
+  interface Scroll {
+    /** Opens the scroll of the slice and returns the first response. */
+    JsonObject open(int slice);
+
+    /** Returns the next response of the scroll. */
+    JsonObject next(String scrollId);
+
+    /** Releases the scroll. */
+    void clear(String scrollId);
+  }
+
+  private final ListeningExecutorService executor;
+  private final String indexName;
+
+  ElasticScan(ListeningExecutorService executor, String indexName) {
+    this.executor = executor;
+    this.indexName = indexName;
+  }
+
+  /**
+   * Reads the slices of the scroll and passes each page of hits to the consumer, which is called
+   * concurrently for different slices. Every slice is cleared once it is read or has failed.
+   */
+  void scan(int slices, Scroll scroll, Consumer<JsonArray> consumer) {
+    List<ListenableFuture<?>> reads = new ArrayList<>(slices);
+    try {
+      for (int i = 0; i < slices; i++) {
+        int slice = i;
+        reads.add(executor.submit(() -> read(slice, scroll, consumer)));
+      }
+      Futures.allAsList(reads).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StorageException("Interrupted while scanning index " + indexName, e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof StorageException) {
+        throw (StorageException) e.getCause();
+      }
+      throw new StorageException("Failed to scan index " + indexName, e.getCause());
+    } finally {
+      reads.forEach(r -> r.cancel(true));
+    }
+  }
+
+  private void read(int slice, Scroll scroll, Consumer<JsonArray> consumer) {
+    JsonObject response = scroll.open(slice);
+    String scrollId = response.get("_scroll_id").getAsString();
+    try {
+      JsonArray hits = response.getAsJsonObject("hits").getAsJsonArray("hits");
+      while (hits.size() > 0) {
+        consumer.accept(hits);
+        response = scroll.next(scrollId);
+        scrollId = response.get("_scroll_id").getAsString();
+        hits = response.getAsJsonObject("hits").getAsJsonArray("hits");
+      }
+    } finally {
+      try {
+        scroll.clear(scrollId);
+      } catch (StorageException e) {
+        logger.atWarning().withCause(e).log("Failed to clear scroll on index %s", indexName);
+      }
+    }
+  }
+}
@@ -0,0 +1,72 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.index.query.Predicate;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Computes the {@code preference} of searches, so that searches with the same key are served by
+ * the same shard copies and hit their caches, while different keys are still spread over all
+ * copies.
+ */
+@Singleton
+class ElasticSearchPreference {
+  enum Mode {
+    /** Searches are spread over all shard copies. */
+    NONE,
+    /** Searches for the same query are sent to the same shard copies. */
+    QUERY,
+    /**
+     * Searches of the same user are sent to the same shard copies. Searches outside of a user
+     * request are handled like {@link #QUERY}.
+     */
+    USER
+  }
+
+  private final Mode mode;
+  private final ElasticCurrentUser currentUser;
+
+  @Inject
+  ElasticSearchPreference(ElasticConfiguration cfg, ElasticCurrentUser currentUser) {
+    this.mode = cfg.searchPreference;
+    this.currentUser = currentUser;
+  }
+
+  /** Returns the preference of a search for the predicate, or null if none should be set. */
+  @Nullable
+  String get(Predicate<?> p) {
+    switch (mode) {
+      case USER:
+        Account.Id accountId = currentUser.getAccountId();
+        if (accountId != null) {
+          return "user-" + accountId.get();
+        }
+        return queryPreference(p);
+      case QUERY:
+        return queryPreference(p);
+      case NONE:
+      default:
+        return null;
+    }
+  }
+
+  private static String queryPreference(Predicate<?> p) {
+    return "query-" + Integer.toHexString(p.toString().hashCode());
+  }
+}
@@ -24,12 +24,26 @@ class ElasticSetting {
       ImmutableMap.of("\\u002E", "\\u0020", "\\u005F", "\\u0020");
 
   static SettingProperties createSetting(ElasticConfiguration config) {
-    return new ElasticSetting.Builder().addCharFilter().addAnalyzer().build(config);
+    return createSetting(config, ImmutableMap.of());
+  }
+
+  /**
+   * Creates the settings of an index whose documents are sorted by the given fields, mapped to
+   * their sort order.
+   */
+  static SettingProperties createSetting(
+      ElasticConfiguration config, ImmutableMap<String, String> indexSort) {
+    return new ElasticSetting.Builder()
+        .addCharFilter()
+        .addAnalyzer()
+        .addIndexSort(indexSort)
+        .build(config);
   }
 
   static class Builder {
     private final ImmutableMap.Builder<String, FieldProperties> fields =
         new ImmutableMap.Builder<>();
+    private ImmutableMap<String, String> indexSort = ImmutableMap.of();
 
     SettingProperties build(ElasticConfiguration config) {
       SettingProperties properties = new SettingProperties();
@@ -38,9 +52,18 @@ class ElasticSetting {
       properties.numberOfReplicas = config.numberOfReplicas;
       properties.maxResultWindow = config.maxResultWindow;
       properties.codec = config.codec;
+      if (!indexSort.isEmpty()) {
+        properties.sortField = indexSort.keySet().toArray(new String[0]);
+        properties.sortOrder = indexSort.values().toArray(new String[0]);
+      }
       return properties;
     }
 
+    Builder addIndexSort(ImmutableMap<String, String> indexSort) {
+      this.indexSort = indexSort;
+      return this;
+    }
+
     Builder addCharFilter() {
       FieldProperties charMapping = new FieldProperties("mapping");
       charMapping.mappings = getCustomCharMappings(CUSTOM_CHAR_MAPPING);
@@ -79,6 +102,12 @@ class ElasticSetting {
     @SerializedName("index.codec")
     String codec;
 
+    @SerializedName("index.sort.field")
+    String[] sortField;
+
+    @SerializedName("index.sort.order")
+    String[] sortOrder;
+
     Map<String, FieldProperties> analysis;
     Integer numberOfShards;
     Integer numberOfReplicas;
@@ -0,0 +1,168 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.index.query.Predicate;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Logs index searches that take longer than {@code elasticsearch.slowQueryThreshold}, and
+ * optionally runs a sample of them again with profiling enabled to log where the time was spent.
+ *
+ * <p>Entries are logged by the logger of this class, so that they can be routed to a separate log.
+ */
+class ElasticSlowQueryLog {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final int MAX_PENDING_PROFILES = 10;
+
+  /** Runs a search request with the given body and URL parameters. */
+  @FunctionalInterface
+  interface Search {
+    JsonObject search(String payload, Map<String, String> params);
+  }
+
+  private final String indexName;
+  private final long thresholdMillis;
+  private final int profilePercentage;
+  private final Search search;
+  private final Executor executor;
+  private final AtomicInteger pendingProfiles = new AtomicInteger();
+
+  ElasticSlowQueryLog(
+      ElasticConfiguration cfg, String indexName, Search search, Executor executor) {
+    this.indexName = indexName;
+    this.thresholdMillis = cfg.slowQueryThreshold;
+    this.profilePercentage = cfg.slowQueryProfilePercentage;
+    this.search = search;
+    this.executor = executor;
+  }
+
+  /**
+   * Logs the search if it was slow.
+   *
+   * @param predicate the predicate the search was generated from
+   * @param payload the search request body
+   * @param params the URL parameters of the search, such as its routing and preference
+   * @param response the search response
+   * @param elapsedNanos the time until the response was received, as seen by the client
+   */
+  void record(
+      Predicate<?> predicate,
+      String payload,
+      Map<String, String> params,
+      JsonObject response,
+      long elapsedNanos) {
+    if (thresholdMillis <= 0) {
+      return;
+    }
+    long elapsedMillis = NANOSECONDS.toMillis(elapsedNanos);
+    JsonElement took = response.get("took");
+    long tookMillis = took != null ? took.getAsLong() : elapsedMillis;
+    if (Math.max(tookMillis, elapsedMillis) < thresholdMillis) {
+      return;
+    }
+
+    JsonObject hits = response.getAsJsonObject("hits");
+    int hitCount = hits != null && hits.has("hits") ? hits.getAsJsonArray("hits").size() : 0;
+    logger.atWarning().log(
+        "Slow search on index %s: took %d ms (%d ms on client), %d hits, shards %s,"
+            + " predicate: %s, search: %s",
+        indexName,
+        tookMillis,
+        elapsedMillis,
+        hitCount,
+        response.get("_shards"),
+        predicate,
+        payload);
+
+    if (profilePercentage > 0 && ThreadLocalRandom.current().nextInt(100) < profilePercentage) {
+      profileLater(predicate, payload, params);
+    }
+  }
+
+  private void profileLater(Predicate<?> predicate, String payload, Map<String, String> params) {
+    // Profiles are only diagnostics, so drop them instead of queuing up work on a slow cluster.
+    if (pendingProfiles.incrementAndGet() > MAX_PENDING_PROFILES) {
+      pendingProfiles.decrementAndGet();
+      return;
+    }
+    try {
+      executor.execute(
+          () -> {
+            try {
+              profile(predicate, payload, params);
+            } finally {
+              pendingProfiles.decrementAndGet();
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      pendingProfiles.decrementAndGet();
+    }
+  }
+
+  private void profile(Predicate<?> predicate, String payload, Map<String, String> params) {
+    try {
+      JsonObject request = JsonParser.parseString(payload).getAsJsonObject();
+      request.addProperty("profile", true);
+      JsonObject response = search.search(request.toString(), params);
+      StringBuilder breakdown = new StringBuilder();
+      JsonObject profile = response.getAsJsonObject("profile");
+      if (profile != null) {
+        for (JsonElement shard : profile.getAsJsonArray("shards")) {
+          JsonObject s = shard.getAsJsonObject();
+          breakdown.append("\n shard ").append(s.get("id").getAsString());
+          for (JsonElement searchProfile : s.getAsJsonArray("searches")) {
+            for (JsonElement query : searchProfile.getAsJsonObject().getAsJsonArray("query")) {
+              appendQueryProfile(breakdown, query.getAsJsonObject(), 2);
+            }
+          }
+        }
+      }
+      logger.atWarning().log(
+          "Profile of slow search on index %s for predicate %s:%s",
+          indexName, predicate, breakdown);
+    } catch (RuntimeException e) {
+      logger.atWarning().withCause(e).log("Failed to profile slow search on index %s", indexName);
+    }
+  }
+
+  private static void appendQueryProfile(StringBuilder out, JsonObject query, int depth) {
+    out.append('\n');
+    for (int i = 0; i < depth; i++) {
+      out.append("  ");
+    }
+    out.append(String.format("%.3f ms ", query.get("time_in_nanos").getAsLong() / 1e6))
+        .append(query.get("type").getAsString())
+        .append(' ')
+        .append(query.get("description").getAsString());
+    JsonElement children = query.get("children");
+    if (children != null) {
+      for (JsonElement child : children.getAsJsonArray()) {
+        appendQueryProfile(out, child.getAsJsonObject(), depth + 1);
+      }
+    }
+  }
+}
@@ -14,18 +14,27 @@
 
 package com.google.gerrit.elasticsearch;
 
-import static com.google.common.collect.ImmutableList.toImmutableList;
-
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.index.StoredValue;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.protobuf.MessageLite;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
-import java.util.stream.StreamSupport;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Function;
 
 /** Bridge to recover fields from the elastic index. */
 public class ElasticStoredValue implements StoredValue {
+  private static final long SECONDS_PER_DAY = 86400;
+  private static final int[] NANOS_SCALE = {
+    100_000_000, 10_000_000, 1_000_000, 100_000, 10_000, 1_000, 100, 10, 1
+  };
+
   private final JsonElement field;
 
   ElasticStoredValue(JsonElement field) {
@@ -39,9 +48,7 @@ public class ElasticStoredValue implements StoredValue {
 
   @Override
   public Iterable<String> asStrings() {
-    return StreamSupport.stream(field.getAsJsonArray().spliterator(), false)
-        .map(f -> f.getAsString())
-        .collect(toImmutableList());
+    return view(JsonElement::getAsString);
   }
 
   @Override
@@ -51,9 +58,7 @@ public class ElasticStoredValue implements StoredValue {
 
   @Override
   public Iterable<Integer> asIntegers() {
-    return StreamSupport.stream(field.getAsJsonArray().spliterator(), false)
-        .map(f -> f.getAsInt())
-        .collect(toImmutableList());
+    return view(JsonElement::getAsInt);
   }
 
   @Override
@@ -63,14 +68,20 @@ public class ElasticStoredValue implements StoredValue {
 
   @Override
   public Iterable<Long> asLongs() {
-    return StreamSupport.stream(field.getAsJsonArray().spliterator(), false)
-        .map(f -> f.getAsLong())
-        .collect(toImmutableList());
+    return view(JsonElement::getAsLong);
   }
 
   @Override
   public Timestamp asTimestamp() {
-    return Timestamp.from(Instant.from(DateTimeFormatter.ISO_INSTANT.parse(field.getAsString())));
+    if (field.isJsonPrimitive() && field.getAsJsonPrimitive().isNumber()) {
+      return new Timestamp(field.getAsLong());
+    }
+    String value = field.getAsString();
+    Timestamp timestamp = parseIsoInstant(value);
+    if (timestamp != null) {
+      return timestamp;
+    }
+    return Timestamp.from(Instant.from(DateTimeFormatter.ISO_INSTANT.parse(value)));
   }
 
   @Override
@@ -80,9 +91,7 @@ public class ElasticStoredValue implements StoredValue {
 
   @Override
   public Iterable<byte[]> asByteArrays() {
-    return StreamSupport.stream(field.getAsJsonArray().spliterator(), false)
-        .map(f -> AbstractElasticIndex.decodeBase64(f.getAsString()))
-        .collect(toImmutableList());
+    return view(f -> AbstractElasticIndex.decodeBase64(f.getAsString()));
   }
 
   @Override
@@ -96,4 +105,132 @@ public class ElasticStoredValue implements StoredValue {
     // Elasticsearch does not store protos
     return null;
   }
+
+  /**
+   * Returns a read-only list that converts the elements of the field on access, without copying
+   * them. A field that holds a single value instead of an array is treated as a list of one.
+   */
+  private <T> List<T> view(Function<JsonElement, T> converter) {
+    if (!field.isJsonArray()) {
+      return Collections.singletonList(converter.apply(field));
+    }
+    return new JsonArrayView<>(field.getAsJsonArray(), converter);
+  }
+
+  /**
+   * Parses timestamps in the {@code yyyy-MM-ddTHH:mm:ss[.fraction]Z} form that is written to the
+   * index, without going through {@link DateTimeFormatter}.
+   *
+   * @return the parsed timestamp, or {@code null} if the value has a different form
+   */
+  @Nullable
+  static Timestamp parseIsoInstant(String value) {
+    int len = value.length();
+    if (len < 20
+        || value.charAt(4) != '-'
+        || value.charAt(7) != '-'
+        || value.charAt(10) != 'T'
+        || value.charAt(13) != ':'
+        || value.charAt(16) != ':'
+        || value.charAt(len - 1) != 'Z') {
+      return null;
+    }
+    int year = digits(value, 0, 4);
+    int month = digits(value, 5, 7);
+    int day = digits(value, 8, 10);
+    int hour = digits(value, 11, 13);
+    int minute = digits(value, 14, 16);
+    int second = digits(value, 17, 19);
+    if (year < 0
+        || month < 1
+        || month > 12
+        || day < 1
+        || day > daysInMonth(year, month)
+        || hour < 0
+        || hour > 23
+        || minute < 0
+        || minute > 59
+        || second < 0
+        || second > 59) {
+      return null;
+    }
+
+    int nanos = 0;
+    if (len > 20) {
+      int fractionDigits = len - 21;
+      if (value.charAt(19) != '.' || fractionDigits < 1 || fractionDigits > NANOS_SCALE.length) {
+        return null;
+      }
+      int fraction = digits(value, 20, len - 1);
+      if (fraction < 0) {
+        return null;
+      }
+      nanos = fraction * NANOS_SCALE[fractionDigits - 1];
+    } else if (value.charAt(19) != 'Z') {
+      return null;
+    }
+
+    long epochSecond =
+        daysFromCivil(year, month, day) * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second;
+    Timestamp timestamp = new Timestamp(epochSecond * 1000);
+    timestamp.setNanos(nanos);
+    return timestamp;
+  }
+
+  private static int daysInMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  /** Returns the decimal value of {@code value[from, to)}, or -1 if it contains a non-digit. */
+  private static int digits(String value, int from, int to) {
+    int result = 0;
+    for (int i = from; i < to; i++) {
+      int d = value.charAt(i) - '0';
+      if (d < 0 || d > 9) {
+        return -1;
+      }
+      result = result * 10 + d;
+    }
+    return result;
+  }
+
+  /** Days since 1970-01-01 of a proleptic Gregorian date (Howard Hinnant's algorithm). */
+  private static long daysFromCivil(int year, int month, int day) {
+    long y = month <= 2 ? year - 1 : year;
+    long era = Math.floorDiv(y, 400);
+    long yoe = y - era * 400;
+    long doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+    long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+    return era * 146097 + doe - 719468;
+  }
+
+  private static class JsonArrayView<T> extends AbstractList<T> implements RandomAccess {
+    private final JsonArray array;
+    private final Function<JsonElement, T> converter;
+
+    JsonArrayView(JsonArray array, Function<JsonElement, T> converter) {
+      this.array = array;
+      this.converter = converter;
+    }
+
+    @Override
+    public T get(int index) {
+      return converter.apply(array.get(index));
+    }
+
+    @Override
+    public int size() {
+      return array.size();
+    }
+  }
 }
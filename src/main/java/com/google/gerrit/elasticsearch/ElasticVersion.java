@@ -15,12 +15,15 @@
 package com.google.gerrit.elasticsearch;
 
 import com.google.common.base.Joiner;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public enum ElasticVersion {
   V7("7\\.\\d+\\.\\d+.*"),
   V8("8\\.\\d+\\.\\d+.*");
 
+  private static final Pattern VERSION_NUMBER = Pattern.compile("(\\d+)\\.(\\d+)");
+
   private final String version;
   private final Pattern pattern;
 
@@ -54,6 +57,21 @@ public enum ElasticVersion {
     throw new UnsupportedVersion(version);
   }
 
+  /**
+   * Whether a version String is at least the given major and minor version.
+   *
+   * @param version a version String, e.g. {@code 7.17.3}
+   */
+  static boolean isAtLeast(String version, int major, int minor) {
+    Matcher m = VERSION_NUMBER.matcher(version);
+    if (!m.lookingAt()) {
+      return false;
+    }
+    int actualMajor = Integer.parseInt(m.group(1));
+    int actualMinor = Integer.parseInt(m.group(2));
+    return actualMajor > major || (actualMajor == major && actualMinor >= minor);
+  }
+
   public static String supportedVersions() {
     return Joiner.on(", ").join(ElasticVersion.values());
   }
@@ -0,0 +1,46 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch.builders;
+
+import java.io.IOException;
+
+/**
+ * A query that wraps another query and runs it in filter context, giving every matching document
+ * the same score.
+ *
+ * <p>A trimmed down version of org.elasticsearch.index.query.ConstantScoreQueryBuilder.
+ */
+class ConstantScoreQueryBuilder extends QueryBuilder {
+
+  private final QueryBuilder filterBuilder;
+
+  /**
+   * A query that wraps another query and simply returns a constant score equal to the query boost
+   * for every document in the query.
+   *
+   * @param filterBuilder The query to wrap in a constant score query
+   */
+  ConstantScoreQueryBuilder(QueryBuilder filterBuilder) {
+    this.filterBuilder = filterBuilder;
+  }
+
+  @Override
+  protected void doXContent(XContentBuilder builder) throws IOException {
+    builder.startObject("constant_score");
+    builder.field("filter");
+    filterBuilder.toXContent(builder);
+    builder.endObject();
+  }
+}
@@ -0,0 +1,47 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch.builders;
+
+import java.io.IOException;
+
+/**
+ * A Query that matches documents containing terms with a specified prefix.
+ *
+ * <p>A trimmed down version of org.elasticsearch.index.query.PrefixQueryBuilder.
+ */
+class PrefixQueryBuilder extends QueryBuilder {
+
+  private final String name;
+
+  private final String prefix;
+
+  /**
+   * Constructs a new prefix query.
+   *
+   * @param name The name of the field
+   * @param prefix The prefix of the term
+   */
+  PrefixQueryBuilder(String name, String prefix) {
+    this.name = name;
+    this.prefix = prefix;
+  }
+
+  @Override
+  protected void doXContent(XContentBuilder builder) throws IOException {
+    builder.startObject("prefix");
+    builder.field(name, prefix);
+    builder.endObject();
+  }
+}
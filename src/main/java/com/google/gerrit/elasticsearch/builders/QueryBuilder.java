@@ -28,4 +28,15 @@ public abstract class QueryBuilder {
   }
 
   protected abstract void doXContent(XContentBuilder builder) throws IOException;
+
+  @Override
+  public String toString() {
+    try {
+      XContentBuilder builder = new XContentBuilder();
+      toXContent(builder);
+      return builder.string();
+    } catch (IOException ioe) {
+      return "";
+    }
+  }
 }
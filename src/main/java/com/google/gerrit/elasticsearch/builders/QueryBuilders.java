@@ -14,6 +14,8 @@
 
 package com.google.gerrit.elasticsearch.builders;
 
+import java.util.Collection;
+
 /**
  * A static factory for simple "import static" usage.
  *
@@ -66,6 +68,16 @@ public abstract class QueryBuilders {
     return new TermQueryBuilder(name, value);
   }
 
+  /**
+   * A Query that matches documents containing any of the given terms.
+   *
+   * @param name The name of the field
+   * @param values The values of the terms
+   */
+  public static TermsQueryBuilder termsQuery(String name, Collection<String> values) {
+    return new TermsQueryBuilder(name, values);
+  }
+
   /**
    * A Query that matches documents within an range of terms.
    *
@@ -75,6 +87,16 @@ public abstract class QueryBuilders {
     return new RangeQueryBuilder(name);
   }
 
+  /**
+   * A Query that matches documents containing terms with a specified prefix.
+   *
+   * @param name The name of the field
+   * @param prefix The prefix of the term
+   */
+  public static PrefixQueryBuilder prefixQuery(String name, String prefix) {
+    return new PrefixQueryBuilder(name, prefix);
+  }
+
   /**
    * A Query that matches documents containing terms with a specified regular expression.
    *
@@ -90,6 +112,15 @@ public abstract class QueryBuilders {
     return new BoolQueryBuilder();
   }
 
+  /**
+   * A query that wraps another query and runs it in filter context, without computing scores.
+   *
+   * @param queryBuilder The query to wrap
+   */
+  public static ConstantScoreQueryBuilder constantScoreQuery(QueryBuilder queryBuilder) {
+    return new ConstantScoreQueryBuilder(queryBuilder);
+  }
+
   /**
    * A filter to filter only documents where a field exists in them.
    *
@@ -37,8 +37,22 @@ public class SearchSourceBuilder {
 
   private boolean trackTotalHits = true;
 
+  private Boolean trackScores;
+
   private List<String> fieldNames;
 
+  private List<String> docValueFieldNames;
+
+  private String timeout;
+
+  private int terminateAfter = -1;
+
+  private int sliceId = -1;
+
+  private String sortJson;
+
+  private int maxSlices = -1;
+
   /** Constructs a new search source builder. */
   public SearchSourceBuilder(ElasticQueryAdapter adapter) {
     this.adapter = adapter;
@@ -63,6 +77,22 @@ public class SearchSourceBuilder {
     return this;
   }
 
+  /**
+   * Restricts the search to one slice of the documents, so that several slices can be read
+   * concurrently.
+   */
+  public SearchSourceBuilder slice(int id, int max) {
+    this.sliceId = id;
+    this.maxSlices = max;
+    return this;
+  }
+
+  /** Sets the sort of the hits, given as an already encoded JSON array. */
+  public SearchSourceBuilder sort(String sortJson) {
+    this.sortJson = sortJson;
+    return this;
+  }
+
   /** The number of search hits to return. Defaults to <tt>10</tt>. */
   public SearchSourceBuilder size(int size) {
     this.size = size;
@@ -74,6 +104,27 @@ public class SearchSourceBuilder {
     return this;
   }
 
+  /**
+   * Sets a time budget for the search, e.g. <tt>5s</tt>. When it is exceeded, the hits collected
+   * so far are returned and the response is flagged as timed out.
+   */
+  public SearchSourceBuilder timeout(String timeout) {
+    this.timeout = timeout;
+    return this;
+  }
+
+  /** The maximum number of documents to collect per shard before terminating the search early. */
+  public SearchSourceBuilder terminateAfter(int terminateAfter) {
+    this.terminateAfter = terminateAfter;
+    return this;
+  }
+
+  /** Whether to compute scores when sorting on a field. Defaults to <tt>false</tt>. */
+  public SearchSourceBuilder trackScores(boolean trackScores) {
+    this.trackScores = trackScores;
+    return this;
+  }
+
   /**
    * Sets the fields to load and return as part of the search request. If none are specified, the
    * source of the document will be returned.
@@ -83,6 +134,34 @@ public class SearchSourceBuilder {
     return this;
   }
 
+  /**
+   * Sets the fields to load from doc values and return as part of the search request. Stored
+   * fields, including the source of the document, are not loaded.
+   */
+  public SearchSourceBuilder docValueFields(List<String> fields) {
+    this.docValueFieldNames = fields;
+    return this;
+  }
+
+  /** Returns a copy of this builder that can be changed without affecting this one. */
+  public SearchSourceBuilder copy() {
+    SearchSourceBuilder copy = new SearchSourceBuilder(adapter);
+    copy.querySourceBuilder = querySourceBuilder;
+    copy.searchAfterBuilder = searchAfterBuilder;
+    copy.from = from;
+    copy.size = size;
+    copy.trackTotalHits = trackTotalHits;
+    copy.trackScores = trackScores;
+    copy.fieldNames = fieldNames;
+    copy.docValueFieldNames = docValueFieldNames;
+    copy.timeout = timeout;
+    copy.terminateAfter = terminateAfter;
+    copy.sliceId = sliceId;
+    copy.maxSlices = maxSlices;
+    copy.sortJson = sortJson;
+    return copy;
+  }
+
   @Override
   public final String toString() {
     try {
@@ -112,10 +191,29 @@ public class SearchSourceBuilder {
       builder.field("track_total_hits", false);
     }
 
+    if (trackScores != null) {
+      builder.field("track_scores", trackScores.booleanValue());
+    }
+
+    if (timeout != null) {
+      builder.field("timeout", timeout);
+    }
+
+    if (terminateAfter != -1) {
+      builder.field("terminate_after", terminateAfter);
+    }
+
     if (querySourceBuilder != null) {
       querySourceBuilder.innerToXContent(builder);
     }
 
+    if (sliceId != -1) {
+      builder.startObject("slice");
+      builder.field("id", sliceId);
+      builder.field("max", maxSlices);
+      builder.endObject();
+    }
+
     if (fieldNames != null) {
       if (fieldNames.size() == 1) {
         builder.field(adapter.searchFilteringName(), fieldNames.get(0));
@@ -128,8 +226,17 @@ public class SearchSourceBuilder {
       }
     }
 
+    if (docValueFieldNames != null) {
+      builder.field("stored_fields", "_none_");
+      builder.field("docvalue_fields", docValueFieldNames);
+    }
+
     if (searchAfterBuilder != null) {
       searchAfterBuilder.innerToXContent(builder);
     }
+
+    if (sortJson != null) {
+      builder.rawField("sort", sortJson);
+    }
   }
 }
@@ -0,0 +1,49 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch.builders;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * A Query that matches documents containing any of the given terms.
+ *
+ * <p>A trimmed down version of org.elasticsearch.index.query.TermsQueryBuilder.
+ */
+class TermsQueryBuilder extends QueryBuilder {
+
+  private final String name;
+
+  private final ImmutableList<String> values;
+
+  /**
+   * Constructs a new terms query.
+   *
+   * @param name The name of the field
+   * @param values The values of the terms
+   */
+  TermsQueryBuilder(String name, Collection<String> values) {
+    this.name = name;
+    this.values = ImmutableList.copyOf(values);
+  }
+
+  @Override
+  protected void doXContent(XContentBuilder builder) throws IOException {
+    builder.startObject("terms");
+    builder.field(name, values);
+    builder.endObject();
+  }
+}
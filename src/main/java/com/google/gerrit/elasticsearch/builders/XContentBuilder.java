@@ -14,39 +14,44 @@
 
 package com.google.gerrit.elasticsearch.builders;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.time.format.DateTimeFormatter.ISO_INSTANT;
 
-import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.json.JsonReadFeature;
 import com.fasterxml.jackson.core.json.JsonWriteFeature;
-import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.util.Date;
 
 /** A trimmed down and modified version of org.elasticsearch.common.xcontent.XContentBuilder. */
 public final class XContentBuilder implements Closeable {
+  /**
+   * Factories are thread-safe and expensive to create, as they hold the symbol tables and buffer
+   * pools, so a single one is shared by all builders. Inspired from
+   * org.elasticsearch.common.xcontent.json.JsonXContent static block.
+   */
+  private static final JsonFactory FACTORY =
+      JsonFactory.builder()
+          .configure(JsonReadFeature.ALLOW_UNQUOTED_FIELD_NAMES, true)
+          .configure(JsonWriteFeature.QUOTE_FIELD_NAMES, true)
+          .configure(JsonReadFeature.ALLOW_JAVA_COMMENTS, true)
+          .configure(JsonFactory.Feature.FAIL_ON_SYMBOL_HASH_OVERFLOW, false)
+          .build();
+
+  /** Returns the factory shared by all builders, which can also create parsers. */
+  public static JsonFactory jsonFactory() {
+    return FACTORY;
+  }
 
   private final JsonGenerator generator;
 
-  private final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+  private final StringWriter writer = new StringWriter();
 
-  /**
-   * Constructs a new builder. Make sure to call {@link #close()} when the builder is done with.
-   * Inspired from org.elasticsearch.common.xcontent.json.JsonXContent static block.
-   */
+  /** Constructs a new builder. Make sure to call {@link #close()} when the builder is done with. */
   public XContentBuilder() throws IOException {
-    this.generator =
-        JsonFactory.builder()
-            .configure(JsonReadFeature.ALLOW_UNQUOTED_FIELD_NAMES, true)
-            .configure(JsonWriteFeature.QUOTE_FIELD_NAMES, true)
-            .configure(JsonReadFeature.ALLOW_JAVA_COMMENTS, true)
-            .configure(JsonFactory.Feature.FAIL_ON_SYMBOL_HASH_OVERFLOW, false)
-            .build()
-            .createGenerator(bos, JsonEncoding.UTF8);
+    this.generator = FACTORY.createGenerator(writer);
   }
 
   public XContentBuilder startObject(String name) throws IOException {
@@ -126,6 +131,18 @@ public final class XContentBuilder implements Closeable {
     return this;
   }
 
+  /** Writes an already encoded JSON value as is. */
+  public XContentBuilder rawValue(String json) throws IOException {
+    generator.writeRawValue(json);
+    return this;
+  }
+
+  /** Writes a field whose value is already encoded JSON. */
+  public XContentBuilder rawField(String name, String json) throws IOException {
+    field(name);
+    return rawValue(json);
+  }
+
   @Override
   public void close() {
     try {
@@ -138,8 +155,7 @@ public final class XContentBuilder implements Closeable {
   /** Returns a string representation of the builder (only applicable for text based xcontent). */
   public String string() {
     close();
-    byte[] bytesArray = bos.toByteArray();
-    return new String(bytesArray, UTF_8);
+    return writer.toString();
   }
 
   private void writeValue(Object value) throws IOException {
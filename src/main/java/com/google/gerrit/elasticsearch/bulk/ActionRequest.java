@@ -14,28 +14,36 @@
 
 package com.google.gerrit.elasticsearch.bulk;
 
-import com.google.gson.JsonObject;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.elasticsearch.builders.XContentBuilder;
+import java.io.IOException;
 
 abstract class ActionRequest extends BulkRequest {
 
   private final String action;
   private final String id;
   private final String index;
+  @Nullable private final String routing;
 
-  protected ActionRequest(String action, String id, String index) {
+  protected ActionRequest(String action, String id, String index, @Nullable String routing) {
     this.action = action;
     this.id = id;
     this.index = index;
+    this.routing = routing;
   }
 
   @Override
   protected String getRequest() {
-    JsonObject properties = new JsonObject();
-    properties.addProperty("_id", id);
-    properties.addProperty("_index", index);
-
-    JsonObject jsonAction = new JsonObject();
-    jsonAction.add(action, properties);
-    return jsonAction.toString() + System.lineSeparator();
+    try (XContentBuilder closeable = new XContentBuilder()) {
+      XContentBuilder builder = closeable.startObject().startObject(action);
+      builder.field("_id", id);
+      builder.field("_index", index);
+      if (routing != null) {
+        builder.field("routing", routing);
+      }
+      return builder.endObject().endObject().string() + System.lineSeparator();
+    } catch (IOException e) {
+      return e.toString();
+    }
   }
 }
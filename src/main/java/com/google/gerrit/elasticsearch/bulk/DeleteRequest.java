@@ -14,9 +14,16 @@
 
 package com.google.gerrit.elasticsearch.bulk;
 
+import com.google.gerrit.common.Nullable;
+
 public class DeleteRequest extends ActionRequest {
 
   public DeleteRequest(String id, String index) {
-    super("delete", id, index);
+    this(id, index, null);
+  }
+
+  /** Creates the request for a document that is routed to its shard by {@code routing}. */
+  public DeleteRequest(String id, String index, @Nullable String routing) {
+    super("delete", id, index, routing);
   }
 }
@@ -14,9 +14,16 @@
 
 package com.google.gerrit.elasticsearch.bulk;
 
+import com.google.gerrit.common.Nullable;
+
 public class IndexRequest extends ActionRequest {
 
   public IndexRequest(String id, String index) {
-    super("index", id, index);
+    this(id, index, null);
+  }
+
+  /** Creates the request for a document that is routed to its shard by {@code routing}. */
+  public IndexRequest(String id, String index, @Nullable String routing) {
+    super("index", id, index, routing);
   }
 }
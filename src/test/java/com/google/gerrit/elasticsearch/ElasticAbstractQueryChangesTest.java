@@ -16,16 +16,20 @@ package com.google.gerrit.elasticsearch;
 
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+import static java.util.stream.Collectors.toList;
 
 import com.google.gerrit.entities.Change;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.extensions.common.ChangeInfo;
 import com.google.gerrit.server.index.change.ChangeIndexDefinition;
 import com.google.gerrit.server.query.change.AbstractQueryChangesTest;
 import com.google.gerrit.testing.ConfigSuite;
 import com.google.gerrit.testing.GerritTestName;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.eclipse.jgit.junit.TestRepository;
 import org.eclipse.jgit.lib.Config;
@@ -48,6 +52,33 @@ public abstract class ElasticAbstractQueryChangesTest extends AbstractQueryChang
     return config;
   }
 
+  @ConfigSuite.Config
+  public static Config routeChangesByProject() {
+    Config config = defaultConfig();
+    config.setInt("elasticsearch", null, "numberOfShards", 3);
+    config.setBoolean("elasticsearch", null, "routeChangesByProject", true);
+    return config;
+  }
+
+  @ConfigSuite.Config
+  public static Config sortChangeIndex() {
+    Config config = defaultConfig();
+    config.setBoolean("elasticsearch", null, "sortChangeIndex", true);
+    return config;
+  }
+
+  /**
+   * Runs the pagination tests with {@code OFFSET} pagination continuing after cached sort values,
+   * which must return the same changes as the default configuration without the cache.
+   */
+  @ConfigSuite.Config
+  public static Config offsetCursors() {
+    Config config = defaultConfig();
+    config.setString("index", null, "paginationType", "OFFSET");
+    config.setInt("elasticsearch", null, "offsetCursorCacheSize", 100);
+    return config;
+  }
+
   private static ElasticContainer container;
   private static CloseableHttpAsyncClient client;
 
@@ -100,9 +131,31 @@ public abstract class ElasticAbstractQueryChangesTest extends AbstractQueryChang
     assertThat(thrown).hasMessageThat().contains("Failed to reindex change");
   }
 
+  @Test
+  public void offsetPagesMatchSingleQuery() throws Exception {
+    Project.NameKey project = Project.nameKey("repo");
+    TestRepository<Repository> repo = createAndOpenProject(project);
+    for (int i = 0; i < 5; i++) {
+      insert(project, newChange(repo));
+    }
+
+    List<Integer> all = numbers(gApi.changes().query("project:repo").get());
+    assertThat(all).hasSize(5);
+    List<Integer> paged = new ArrayList<>();
+    for (int start = 0; start < all.size(); start += 2) {
+      paged.addAll(
+          numbers(gApi.changes().query("project:repo").withStart(start).withLimit(2).get()));
+    }
+    assertThat(paged).containsExactlyElementsIn(all).inOrder();
+  }
+
   @Test
   public void testNumDocs() throws Exception {
     assertThat(changeIndexDefinition.getIndexCollection().getSearchIndex().numDocs())
         .isGreaterThan(-1);
   }
+
+  private static List<Integer> numbers(List<ChangeInfo> changes) {
+    return changes.stream().map(c -> c._number).collect(toList());
+  }
 }
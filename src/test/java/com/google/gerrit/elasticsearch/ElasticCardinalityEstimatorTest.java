@@ -0,0 +1,162 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.elasticsearch.ElasticCardinalityEstimator.DEFAULT_CARDINALITY;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_CARDINALITY_FIELD;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_CARDINALITY_REFRESH_INTERVAL;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_SERVER;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.SECTION_ELASTICSEARCH;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.index.IndexConfig;
+import com.google.gerrit.index.query.Predicate;
+import com.google.gerrit.server.index.change.ChangeField;
+import com.google.gerrit.server.index.change.ChangeSchemaDefinitions;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.query.change.ChangePredicates;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ElasticCardinalityEstimatorTest {
+  private static final String PROJECT = ChangeField.PROJECT_SPEC.getName();
+
+  private final List<String> searches = new ArrayList<>();
+  private final AtomicLong nanos = new AtomicLong();
+  private boolean failSearches;
+  private ElasticCardinalityEstimator estimator;
+
+  @Before
+  public void setUp() {
+    Config cfg = new Config();
+    cfg.setString(SECTION_ELASTICSEARCH, null, KEY_SERVER, "http://elastic:1234");
+    cfg.setString(SECTION_ELASTICSEARCH, null, KEY_CARDINALITY_FIELD, PROJECT);
+    cfg.setString(SECTION_ELASTICSEARCH, null, KEY_CARDINALITY_REFRESH_INTERVAL, "1 min");
+    estimator =
+        new ElasticCardinalityEstimator(
+            new ElasticConfiguration(cfg, IndexConfig.fromConfig(cfg).build()),
+            ChangeSchemaDefinitions.INSTANCE.getLatest(),
+            this::search,
+            MoreExecutors.directExecutor(),
+            new Ticker() {
+              @Override
+              public long read() {
+                return nanos.get();
+              }
+            });
+  }
+
+  @Test
+  public void defaultIsUsedUntilStatisticsAreLoaded() {
+    assertThat(estimator.estimate(project("foo"))).isEqualTo(DEFAULT_CARDINALITY);
+    assertThat(searches).hasSize(1);
+    assertThat(searches.get(0)).contains("\"terms\":{\"field\":\"" + PROJECT + "\"");
+
+    assertThat(estimator.estimate(project("foo"))).isEqualTo(30);
+    assertThat(searches).hasSize(1);
+  }
+
+  @Test
+  public void failedFirstLoadIsRetried() {
+    failSearches = true;
+    assertThat(estimator.estimate(project("foo"))).isEqualTo(DEFAULT_CARDINALITY);
+    assertThat(estimator.estimate(project("foo"))).isEqualTo(DEFAULT_CARDINALITY);
+    assertThat(searches).hasSize(2);
+
+    failSearches = false;
+    load();
+    assertThat(estimator.estimate(project("foo"))).isEqualTo(30);
+  }
+
+  @Test
+  public void failedReloadKeepsPreviousStatistics() {
+    load();
+    failSearches = true;
+    nanos.addAndGet(MINUTES.toNanos(2));
+
+    assertThat(estimator.estimate(project("foo"))).isEqualTo(30);
+    assertThat(searches).hasSize(2);
+    assertThat(estimator.estimate(project("foo"))).isEqualTo(30);
+  }
+
+  @Test
+  public void conjunctionIsSmallestKnownEstimate() {
+    load();
+    assertThat(estimator.estimate(Predicate.and(project("foo"), project("bar")))).isEqualTo(20);
+    assertThat(estimator.estimate(Predicate.and(project("foo"), project("baz")))).isEqualTo(30);
+    assertThat(estimator.estimate(Predicate.and(project("baz"), change(1))))
+        .isEqualTo(DEFAULT_CARDINALITY);
+  }
+
+  @Test
+  public void disjunctionIsSumOfEstimates() {
+    load();
+    assertThat(estimator.estimate(Predicate.or(project("foo"), project("bar")))).isEqualTo(50);
+    assertThat(estimator.estimate(Predicate.or(project("foo"), project("baz"))))
+        .isEqualTo(DEFAULT_CARDINALITY);
+  }
+
+  @Test
+  public void negationIsRestOfDocuments() {
+    load();
+    assertThat(estimator.estimate(Predicate.not(project("foo")))).isEqualTo(70);
+    assertThat(estimator.estimate(Predicate.not(project("baz")))).isEqualTo(DEFAULT_CARDINALITY);
+  }
+
+  @Test
+  public void untrackedFieldsUseDefault() {
+    load();
+    assertThat(estimator.estimate(change(1))).isEqualTo(DEFAULT_CARDINALITY);
+  }
+
+  private void load() {
+    estimator.estimate(project("foo"));
+  }
+
+  private JsonObject search(String request) {
+    searches.add(request);
+    if (failSearches) {
+      throw new StorageException("search failed");
+    }
+    return JsonParser.parseString(
+            "{\"hits\":{\"total\":{\"value\":100}},"
+                + "\"aggregations\":{\""
+                + PROJECT
+                + "\":{\"sum_other_doc_count\":50,"
+                + "\"buckets\":[{\"key\":\"foo\",\"doc_count\":30},"
+                + "{\"key\":\"bar\",\"doc_count\":20}]}}}")
+        .getAsJsonObject();
+  }
+
+  private static Predicate<ChangeData> change(int id) {
+    return ChangePredicates.idStr(Change.id(id));
+  }
+
+  private static Predicate<ChangeData> project(String name) {
+    return ChangePredicates.project(Project.nameKey(name));
+  }
+}
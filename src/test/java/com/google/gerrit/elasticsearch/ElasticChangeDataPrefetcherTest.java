@@ -0,0 +1,85 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.index.change.ChangeField;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.inject.OutOfScopeException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.After;
+import org.junit.Test;
+
+public class ElasticChangeDataPrefetcherTest {
+  private final ThreadPoolExecutor executor =
+      new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+  private final ImmutableList<ChangeData> changes =
+      ImmutableList.of(change(1), change(2), change(3));
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void idOnlyQueryDoesNotLoadChangeData() {
+    ElasticChangeDataPrefetcher prefetcher = newPrefetcher(true);
+    prefetcher.prefetch(changes, ImmutableSet.of(ChangeField.NUMERIC_ID_STR_SPEC.getName()));
+    assertThat(executor.getTaskCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void internalQueryDoesNotLoadChangeData() {
+    ElasticChangeDataPrefetcher prefetcher = newPrefetcher(false);
+    prefetcher.prefetch(changes, ImmutableSet.of(ChangeField.CHANGE_SPEC.getName()));
+    assertThat(executor.getTaskCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void userFacingChangeQueryLoadsChangeData() {
+    ElasticChangeDataPrefetcher prefetcher = newPrefetcher(true);
+    prefetcher.prefetch(changes, ImmutableSet.of(ChangeField.CHANGE_SPEC.getName()));
+    assertThat(executor.getTaskCount()).isEqualTo(changes.size());
+  }
+
+  private ElasticChangeDataPrefetcher newPrefetcher(boolean userFacing) {
+    ElasticCurrentUser currentUser =
+        new ElasticCurrentUser(
+            () -> {
+              throw new OutOfScopeException("not in a request");
+            }) {
+          @Override
+          boolean isUserFacing() {
+            return userFacing;
+          }
+        };
+    return new ElasticChangeDataPrefetcher(
+        MoreExecutors.listeningDecorator(executor), currentUser);
+  }
+
+  private static ChangeData change(int id) {
+    return ChangeData.createForTest(
+        Project.nameKey("project"), Change.id(id), 1, ObjectId.zeroId());
+  }
+}
@@ -0,0 +1,97 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_ROUTE_CHANGES_BY_PROJECT;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_SERVER;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.SECTION_ELASTICSEARCH;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.elasticsearch.ElasticChangeIndex.ChangeMapping;
+import com.google.gerrit.elasticsearch.ElasticSetting.SettingProperties;
+import com.google.gerrit.index.IndexConfig;
+import com.google.gerrit.server.index.change.ChangeSchemaDefinitions;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import java.util.Map;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Test;
+
+public class ElasticChangeIndexTest {
+  @Test
+  public void routingIsRecordedInMeta() {
+    assertThat(createMapping(false).changes.meta)
+        .doesNotContainKey(ElasticChangeIndex.META_ROUTING);
+    assertThat(createMapping(true).changes.meta)
+        .containsEntry(ElasticChangeIndex.META_ROUTING, ElasticChangeIndex.ROUTING_BY_PROJECT);
+  }
+
+  @Test
+  public void indexSortMatchesSortArray() {
+    SettingProperties setting =
+        ElasticSetting.createSetting(newConfig(false), ElasticChangeIndex.INDEX_SORT);
+    JsonObject settings = new Gson().toJsonTree(setting).getAsJsonObject();
+    JsonArray fields = settings.getAsJsonArray("index.sort.field");
+    JsonArray orders = settings.getAsJsonArray("index.sort.order");
+    JsonArray sortArray = ElasticChangeIndex.getSortArray();
+    assertThat(fields.size()).isEqualTo(sortArray.size());
+    assertThat(orders.size()).isEqualTo(sortArray.size());
+    for (int i = 0; i < sortArray.size(); i++) {
+      Map.Entry<String, JsonElement> sort =
+          getOnlyElement(sortArray.get(i).getAsJsonObject().entrySet());
+      assertThat(fields.get(i).getAsString()).isEqualTo(sort.getKey());
+      assertThat(orders.get(i).getAsString())
+          .isEqualTo(sort.getValue().getAsJsonObject().get("order").getAsString());
+    }
+  }
+
+  @Test
+  public void searchesAreRoutedByProject() {
+    assertThat(ElasticChangeIndex.getSearchRouting(ImmutableSet.of("foo"))).isEqualTo("foo");
+    assertThat(ElasticChangeIndex.getSearchRouting(ImmutableList.of("foo", "bar/baz")))
+        .isEqualTo("foo,bar/baz");
+  }
+
+  @Test
+  public void searchesWithoutProjectAreNotRouted() {
+    assertThat(ElasticChangeIndex.getSearchRouting(ImmutableSet.of())).isNull();
+  }
+
+  @Test
+  public void projectsWithCommaAreNotRouted() {
+    assertThat(ElasticChangeIndex.getSearchRouting(ImmutableSet.of("foo,bar"))).isNull();
+    assertThat(ElasticChangeIndex.getSearchRouting(ImmutableList.of("foo", "bar,baz"))).isNull();
+  }
+
+  private static ChangeMapping createMapping(boolean routeChangesByProject) {
+    return new ChangeMapping(
+        ChangeSchemaDefinitions.INSTANCE.getLatest(),
+        new ElasticQueryAdapter(),
+        newConfig(routeChangesByProject));
+  }
+
+  private static ElasticConfiguration newConfig(boolean routeChangesByProject) {
+    Config cfg = new Config();
+    cfg.setString(SECTION_ELASTICSEARCH, null, KEY_SERVER, "http://elastic:1234");
+    cfg.setBoolean(
+        SECTION_ELASTICSEARCH, null, KEY_ROUTE_CHANGES_BY_PROJECT, routeChangesByProject);
+    return new ElasticConfiguration(cfg, IndexConfig.fromConfig(cfg).build());
+  }
+}
@@ -18,7 +18,9 @@ import static com.google.common.truth.Truth.assertThat;
 import static com.google.gerrit.elasticsearch.ElasticConfiguration.DEFAULT_USERNAME;
 import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_PASSWORD;
 import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_PREFIX;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_SEARCH_TIMEOUT;
 import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_SERVER;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_TERMINATE_AFTER;
 import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_USERNAME;
 import static com.google.gerrit.elasticsearch.ElasticConfiguration.SECTION_ELASTICSEARCH;
 import static com.google.gerrit.testing.GerritJUnit.assertThrows;
@@ -111,6 +113,19 @@ public class ElasticConfigurationTest {
     assertHosts(esCfg, "http://elastic1:1234");
   }
 
+  @Test
+  public void searchLimitsCanBeOverriddenPerIndexType() throws Exception {
+    Config cfg = newConfig();
+    cfg.setString(SECTION_ELASTICSEARCH, null, KEY_SEARCH_TIMEOUT, "5s");
+    cfg.setString(SECTION_ELASTICSEARCH, "changes", KEY_SEARCH_TIMEOUT, "30s");
+    cfg.setInt(SECTION_ELASTICSEARCH, "accounts", KEY_TERMINATE_AFTER, 1000);
+    ElasticConfiguration esCfg = newElasticConfig(cfg);
+    assertThat(esCfg.getSearchTimeout("changes")).isEqualTo(30000);
+    assertThat(esCfg.getSearchTimeout("accounts")).isEqualTo(5000);
+    assertThat(esCfg.getTerminateAfter("changes")).isEqualTo(0);
+    assertThat(esCfg.getTerminateAfter("accounts")).isEqualTo(1000);
+  }
+
   @Test
   public void unsupportedPaginationTypeNone() {
     Config cfg = new Config();
@@ -0,0 +1,102 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_HEDGE_SEARCH_BUDGET;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_HEDGE_SEARCH_PERCENTILE;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_SERVER;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.SECTION_ELASTICSEARCH;
+import static com.google.gerrit.elasticsearch.ElasticHedgedSearch.HEDGE_DELAY_UPDATE_INTERVAL;
+import static com.google.gerrit.elasticsearch.ElasticHedgedSearch.LATENCY_SAMPLES;
+import static com.google.gerrit.elasticsearch.ElasticHedgedSearch.MAX_HEDGE_TOKENS;
+import static com.google.gerrit.elasticsearch.ElasticHedgedSearch.MIN_LATENCY_SAMPLES;
+
+import com.google.gerrit.index.IndexConfig;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ElasticHedgedSearchTest {
+  private ElasticHedgedSearch hedgedSearch;
+
+  @Before
+  public void setUp() {
+    Config cfg = new Config();
+    cfg.setString(SECTION_ELASTICSEARCH, null, KEY_SERVER, "http://elastic:1234");
+    cfg.setInt(SECTION_ELASTICSEARCH, null, KEY_HEDGE_SEARCH_PERCENTILE, 90);
+    cfg.setInt(SECTION_ELASTICSEARCH, null, KEY_HEDGE_SEARCH_BUDGET, 50);
+    hedgedSearch =
+        new ElasticHedgedSearch(
+            null, new ElasticConfiguration(cfg, IndexConfig.fromConfig(cfg).build()), "test");
+  }
+
+  @Test
+  public void noHedgingUntilEnoughLatenciesAreRecorded() {
+    for (int i = 1; i < MIN_LATENCY_SAMPLES; i++) {
+      hedgedSearch.recordLatency(i);
+    }
+    assertThat(hedgedSearch.hedgeDelayNanos()).isEqualTo(-1);
+
+    hedgedSearch.recordLatency(MIN_LATENCY_SAMPLES);
+    // The 90th percentile of the latencies 1 to 20.
+    assertThat(hedgedSearch.hedgeDelayNanos()).isEqualTo(19);
+  }
+
+  @Test
+  public void hedgeDelayIsUpdatedPeriodically() {
+    record(MIN_LATENCY_SAMPLES, 1);
+    assertThat(hedgedSearch.hedgeDelayNanos()).isEqualTo(1);
+
+    record(HEDGE_DELAY_UPDATE_INTERVAL - 1, 1000);
+    assertThat(hedgedSearch.hedgeDelayNanos()).isEqualTo(1);
+
+    record(1, 1000);
+    assertThat(hedgedSearch.hedgeDelayNanos()).isEqualTo(1000);
+  }
+
+  @Test
+  public void oldLatenciesAreReplaced() {
+    record(LATENCY_SAMPLES, 1000);
+    record(LATENCY_SAMPLES, 1);
+    assertThat(hedgedSearch.hedgeDelayNanos()).isEqualTo(1);
+  }
+
+  @Test
+  public void hedgesAreLimitedByBudget() {
+    assertThat(hedgedSearch.acquireHedge()).isFalse();
+
+    record(1, 1);
+    assertThat(hedgedSearch.acquireHedge()).isFalse();
+    record(1, 1);
+    assertThat(hedgedSearch.acquireHedge()).isTrue();
+    assertThat(hedgedSearch.acquireHedge()).isFalse();
+  }
+
+  @Test
+  public void unusedBudgetIsCapped() {
+    record(LATENCY_SAMPLES, 1);
+    for (int i = 0; i < MAX_HEDGE_TOKENS; i++) {
+      assertThat(hedgedSearch.acquireHedge()).isTrue();
+    }
+    assertThat(hedgedSearch.acquireHedge()).isFalse();
+  }
+
+  private void record(int samples, long latencyNanos) {
+    for (int i = 0; i < samples; i++) {
+      hedgedSearch.recordLatency(latencyNanos);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_ACCELERATE_PREFIX_QUERIES;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_ACCELERATE_REGEX_QUERIES;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_SERVER;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.SECTION_ELASTICSEARCH;
+
+import com.google.gerrit.elasticsearch.ElasticMapping.FieldProperties;
+import com.google.gerrit.elasticsearch.ElasticMapping.Mapping;
+import com.google.gerrit.index.IndexConfig;
+import com.google.gerrit.server.index.change.ChangeField;
+import com.google.gerrit.server.index.change.ChangeSchemaDefinitions;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Test;
+
+public class ElasticMappingTest {
+  private static final String PATH = ChangeField.PATH_SPEC.getName();
+  private static final String PROJECTS = ChangeField.PROJECTS_SPEC.getName();
+
+  @Test
+  public void exactFieldsHaveWildcardSubfieldIfRegexQueriesAreAccelerated() {
+    assertThat(createMapping(false, false).properties.get(PATH).fields).isNull();
+
+    FieldProperties path = createMapping(true, false).properties.get(PATH);
+    assertThat(path.fields.keySet()).containsExactly(ElasticMapping.WILDCARD_SUBFIELD);
+    assertThat(path.fields.get(ElasticMapping.WILDCARD_SUBFIELD).type)
+        .isEqualTo(ElasticMapping.WILDCARD_FIELD_TYPE);
+  }
+
+  @Test
+  public void wildcardSubfieldsAreRecordedInMeta() {
+    assertThat(createMapping(false, false).meta).isEmpty();
+    assertThat(createMapping(true, false).meta)
+        .containsExactly(ElasticMapping.META_WILDCARD_SUBFIELDS, true);
+  }
+
+  @Test
+  public void noWildcardSubfieldsIfNotSupported() {
+    Mapping mapping = createMapping(new ElasticQueryAdapter(false), true, false);
+    assertThat(mapping.properties.get(PATH).fields).isNull();
+    assertThat(mapping.meta).isEmpty();
+  }
+
+  @Test
+  public void prefixFieldsIndexPrefixesIfPrefixQueriesAreAccelerated() {
+    assertThat(createMapping(false, false).properties.get(PROJECTS).indexPrefixes).isNull();
+
+    FieldProperties projects = createMapping(false, true).properties.get(PROJECTS);
+    assertThat(projects.indexPrefixes).containsKey("min_chars");
+    assertThat(projects.indexPrefixes).containsKey("max_chars");
+    assertThat(projects.analyzer).isEqualTo("keyword_tokenizer");
+  }
+
+  private static Mapping createMapping(
+      boolean accelerateRegexQueries, boolean acceleratePrefixQueries) {
+    return createMapping(
+        new ElasticQueryAdapter(), accelerateRegexQueries, acceleratePrefixQueries);
+  }
+
+  private static Mapping createMapping(
+      ElasticQueryAdapter adapter,
+      boolean accelerateRegexQueries,
+      boolean acceleratePrefixQueries) {
+    Config cfg = new Config();
+    cfg.setString(SECTION_ELASTICSEARCH, null, KEY_SERVER, "http://elastic:1234");
+    cfg.setBoolean(
+        SECTION_ELASTICSEARCH, null, KEY_ACCELERATE_REGEX_QUERIES, accelerateRegexQueries);
+    cfg.setBoolean(
+        SECTION_ELASTICSEARCH, null, KEY_ACCELERATE_PREFIX_QUERIES, acceleratePrefixQueries);
+    return ElasticMapping.createMapping(
+        ChangeSchemaDefinitions.INSTANCE.getLatest(),
+        adapter,
+        new ElasticConfiguration(cfg, IndexConfig.fromConfig(cfg).build()));
+  }
+}
@@ -0,0 +1,184 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_MULTI_SEARCH_MAX_BATCH_SIZE;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_MULTI_SEARCH_WINDOW;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_SERVER;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.SECTION_ELASTICSEARCH;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.index.IndexConfig;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.eclipse.jgit.lib.Config;
+import org.junit.After;
+import org.junit.Test;
+
+public class ElasticMultiSearchTest {
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void searchIsSentRightAwayIfNoOtherSearchIsRunning() {
+    ElasticMultiSearch multiSearch = newMultiSearch(this::respond);
+
+    long start = System.nanoTime();
+    assertThat(search(multiSearch, "a")).isEqualTo("a");
+    assertThat(System.nanoTime() - start).isLessThan(SECONDS.toNanos(30));
+    assertThat(batches).containsExactly(ImmutableList.of("a"));
+  }
+
+  @Test
+  public void searchesIssuedWhileOthersRunAreBatched() throws Exception {
+    CountDownLatch firstStarted = new CountDownLatch(1);
+    CountDownLatch firstReleased = new CountDownLatch(1);
+    ElasticMultiSearch multiSearch =
+        newMultiSearch(
+            body -> {
+              if (body.contains("\"a\"")) {
+                firstStarted.countDown();
+                await(firstReleased);
+              }
+              return respond(body);
+            });
+
+    Future<String> a = executor.submit(() -> search(multiSearch, "a"));
+    await(firstStarted);
+    Future<String> b = executor.submit(() -> search(multiSearch, "b"));
+    Future<String> c = executor.submit(() -> search(multiSearch, "c"));
+
+    // The second batch is sent once it is full, while the first one is still running.
+    assertThat(b.get(30, SECONDS)).isEqualTo("b");
+    assertThat(c.get(30, SECONDS)).isEqualTo("c");
+    assertThat(a.isDone()).isFalse();
+    firstReleased.countDown();
+    assertThat(a.get(30, SECONDS)).isEqualTo("a");
+
+    assertThat(batches).hasSize(2);
+    assertThat(batches.get(0)).containsExactly("a");
+    assertThat(batches.get(1)).containsExactly("b", "c");
+  }
+
+  @Test
+  public void failedSearchOnlyFailsItsOwnResponse() throws Exception {
+    CountDownLatch firstStarted = new CountDownLatch(1);
+    CountDownLatch firstReleased = new CountDownLatch(1);
+    ElasticMultiSearch multiSearch =
+        newMultiSearch(
+            body -> {
+              if (body.contains("\"a\"")) {
+                firstStarted.countDown();
+                await(firstReleased);
+              }
+              return respond(body);
+            });
+
+    Future<String> a = executor.submit(() -> search(multiSearch, "a"));
+    await(firstStarted);
+    Future<JsonObject> ok =
+        executor.submit(() -> multiSearch.search(new JsonObject(), payload("ok")));
+    Future<JsonObject> failed =
+        executor.submit(() -> multiSearch.search(new JsonObject(), payload("error")));
+
+    assertThat(ok.get(30, SECONDS).get("id").getAsString()).isEqualTo("ok");
+    assertThat(ok.get(30, SECONDS).has("error")).isFalse();
+    assertThat(failed.get(30, SECONDS).getAsJsonObject("error").get("type").getAsString())
+        .isEqualTo("search_phase_execution_exception");
+    firstReleased.countDown();
+    a.get(30, SECONDS);
+  }
+
+  @Test
+  public void failedRequestFailsAllSearchesOfBatch() {
+    ElasticMultiSearch multiSearch =
+        newMultiSearch(
+            body -> {
+              throw new IOException("connection refused");
+            });
+
+    StorageException thrown = assertThrows(StorageException.class, () -> search(multiSearch, "a"));
+    assertThat(thrown).hasCauseThat().isInstanceOf(IOException.class);
+  }
+
+  private ElasticMultiSearch newMultiSearch(ElasticMultiSearch.Sender sender) {
+    Config cfg = new Config();
+    cfg.setString(SECTION_ELASTICSEARCH, null, KEY_SERVER, "http://elastic:1234");
+    cfg.setString(SECTION_ELASTICSEARCH, null, KEY_MULTI_SEARCH_WINDOW, "1 min");
+    cfg.setInt(SECTION_ELASTICSEARCH, null, KEY_MULTI_SEARCH_MAX_BATCH_SIZE, 2);
+    return new ElasticMultiSearch(
+        new ElasticConfiguration(cfg, IndexConfig.fromConfig(cfg).build()), "test", sender);
+  }
+
+  private static String search(ElasticMultiSearch multiSearch, String id) {
+    return multiSearch.search(new JsonObject(), payload(id)).get("id").getAsString();
+  }
+
+  private static String payload(String id) {
+    JsonObject payload = new JsonObject();
+    payload.addProperty("id", id);
+    return payload.toString();
+  }
+
+  /** Answers every search of the body with its id, or with an error if the id is "error". */
+  private JsonObject respond(String body) {
+    List<String> batch = new ArrayList<>();
+    JsonArray responses = new JsonArray();
+    String[] lines = body.split("\n");
+    for (int i = 1; i < lines.length; i += 2) {
+      String id = JsonParser.parseString(lines[i]).getAsJsonObject().get("id").getAsString();
+      batch.add(id);
+      JsonObject response = new JsonObject();
+      if (id.equals("error")) {
+        JsonObject error = new JsonObject();
+        error.addProperty("type", "search_phase_execution_exception");
+        response.add("error", error);
+      } else {
+        response.addProperty("id", id);
+      }
+      responses.add(response);
+    }
+    batches.add(batch);
+    JsonObject result = new JsonObject();
+    result.add("responses", responses);
+    return result;
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      assertThat(latch.await(30, SECONDS)).isTrue();
+    } catch (InterruptedException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
@@ -0,0 +1,138 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_OFFSET_CURSOR_CACHE_SIZE;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_SERVER;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.SECTION_ELASTICSEARCH;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.index.IndexConfig;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Test;
+
+public class ElasticOffsetCursorsTest {
+  private static final String SEARCH = "search";
+
+  private final AtomicLong nanos = new AtomicLong();
+
+  @Test
+  public void cursorIsSortValueOfHitBeforeOffset() {
+    ElasticOffsetCursors cursors = newCursors(10);
+    cursors.put(SEARCH, 10, ImmutableList.of(hit(1), hit(2), hit(3)));
+
+    assertThat(cursors.get(SEARCH, 11)).isEqualTo(sort(1));
+    assertThat(cursors.get(SEARCH, 12)).isEqualTo(sort(2));
+    assertThat(cursors.get(SEARCH, 13)).isEqualTo(sort(3));
+  }
+
+  @Test
+  public void offsetsOutsideOfPageHaveNoCursor() {
+    ElasticOffsetCursors cursors = newCursors(10);
+    cursors.put(SEARCH, 10, ImmutableList.of(hit(1), hit(2), hit(3)));
+
+    assertThat(cursors.get(SEARCH, 0)).isNull();
+    assertThat(cursors.get(SEARCH, 9)).isNull();
+    assertThat(cursors.get(SEARCH, 10)).isNull();
+    assertThat(cursors.get(SEARCH, 14)).isNull();
+    assertThat(cursors.get(SEARCH, 20)).isNull();
+  }
+
+  @Test
+  public void otherSearchesHaveNoCursor() {
+    ElasticOffsetCursors cursors = newCursors(10);
+    cursors.put(SEARCH, 0, ImmutableList.of(hit(1)));
+
+    assertThat(cursors.get("other", 1)).isNull();
+  }
+
+  @Test
+  public void laterPageReplacesEarlierPage() {
+    ElasticOffsetCursors cursors = newCursors(10);
+    cursors.put(SEARCH, 0, ImmutableList.of(hit(1), hit(2)));
+    cursors.put(SEARCH, 2, ImmutableList.of(hit(3), hit(4)));
+
+    assertThat(cursors.get(SEARCH, 1)).isNull();
+    assertThat(cursors.get(SEARCH, 2)).isNull();
+    assertThat(cursors.get(SEARCH, 3)).isEqualTo(sort(3));
+    assertThat(cursors.get(SEARCH, 4)).isEqualTo(sort(4));
+  }
+
+  @Test
+  public void hitsWithoutSortValuesAreNotRecorded() {
+    ElasticOffsetCursors cursors = newCursors(10);
+    cursors.put(SEARCH, 0, ImmutableList.of(new JsonObject()));
+    cursors.put(SEARCH, 0, ImmutableList.of());
+
+    assertThat(cursors.get(SEARCH, 1)).isNull();
+  }
+
+  @Test
+  public void cursorsExpire() {
+    ElasticOffsetCursors cursors = newCursors(10);
+    cursors.put(SEARCH, 0, ImmutableList.of(hit(1)));
+
+    nanos.addAndGet(MINUTES.toNanos(ElasticOffsetCursors.EXPIRY_MINUTES) - 1);
+    assertThat(cursors.get(SEARCH, 1)).isEqualTo(sort(1));
+
+    // Reading the cursor extends its life.
+    nanos.addAndGet(MINUTES.toNanos(ElasticOffsetCursors.EXPIRY_MINUTES) - 1);
+    assertThat(cursors.get(SEARCH, 1)).isEqualTo(sort(1));
+
+    nanos.addAndGet(MINUTES.toNanos(ElasticOffsetCursors.EXPIRY_MINUTES));
+    assertThat(cursors.get(SEARCH, 1)).isNull();
+  }
+
+  @Test
+  public void disabledWithoutCacheSize() {
+    ElasticOffsetCursors cursors = newCursors(0);
+    assertThat(cursors.isEnabled()).isFalse();
+
+    cursors.put(SEARCH, 0, ImmutableList.of(hit(1)));
+    assertThat(cursors.get(SEARCH, 1)).isNull();
+  }
+
+  private ElasticOffsetCursors newCursors(int cacheSize) {
+    Config cfg = new Config();
+    cfg.setString(SECTION_ELASTICSEARCH, null, KEY_SERVER, "http://elastic:1234");
+    cfg.setInt(SECTION_ELASTICSEARCH, null, KEY_OFFSET_CURSOR_CACHE_SIZE, cacheSize);
+    return new ElasticOffsetCursors(
+        new ElasticConfiguration(cfg, IndexConfig.fromConfig(cfg).build()),
+        new Ticker() {
+          @Override
+          public long read() {
+            return nanos.get();
+          }
+        });
+  }
+
+  private static JsonObject hit(int id) {
+    JsonObject hit = new JsonObject();
+    hit.add("sort", sort(id));
+    return hit;
+  }
+
+  private static JsonArray sort(int id) {
+    JsonArray sort = new JsonArray();
+    sort.add(id);
+    return sort;
+  }
+}
@@ -0,0 +1,140 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_OFFSET_CURSOR_CACHE_SIZE;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_OVER_FETCH_MAX_FACTOR;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_SERVER;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.SECTION_ELASTICSEARCH;
+
+import com.google.gerrit.index.IndexConfig;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ElasticOverFetchTest {
+  private static final String SEARCH = "{\"query\":{\"match_all\":{}}}";
+
+  private ElasticOverFetch overFetch;
+  private ElasticOffsetCursors offsetCursors;
+
+  @Before
+  public void setUp() {
+    Config cfg = new Config();
+    cfg.setString(SECTION_ELASTICSEARCH, null, KEY_SERVER, "http://elastic:1234");
+    cfg.setInt(SECTION_ELASTICSEARCH, null, KEY_OVER_FETCH_MAX_FACTOR, 4);
+    cfg.setInt(SECTION_ELASTICSEARCH, null, KEY_OFFSET_CURSOR_CACHE_SIZE, 10);
+    ElasticConfiguration elasticConfig =
+        new ElasticConfiguration(cfg, IndexConfig.fromConfig(cfg).build());
+    overFetch =
+        new ElasticOverFetch(elasticConfig, new ElasticMetrics(new DisabledMetricMaker()), "test");
+    offsetCursors = new ElasticOffsetCursors(elasticConfig);
+  }
+
+  @Test
+  public void excessHitsServeFollowUpSearchOnce() {
+    overFetch.put(SEARCH, sort(1), 2, hits(2, 4), false);
+
+    ElasticOverFetch.Page page = overFetch.take(SEARCH, sort(1), 2, 2);
+    assertThat(page).isNotNull();
+    assertThat(page.start).isEqualTo(2);
+    assertThat(page.hits).isEqualTo(hits(2, 4));
+    assertThat(overFetch.take(SEARCH, sort(1), 2, 2)).isNull();
+  }
+
+  @Test
+  public void followUpIsMatchedByOffsetWithoutSearchAfter() {
+    overFetch.put(SEARCH, sort(1), 2, hits(2, 4), false);
+    assertThat(overFetch.take(SEARCH, null, 3, 2)).isNull();
+
+    overFetch.put(SEARCH, sort(1), 2, hits(2, 4), false);
+    assertThat(overFetch.take(SEARCH, null, 2, 2)).isNotNull();
+  }
+
+  @Test
+  public void shortExcessDoublesFetchSize() {
+    assertThat(overFetch.fetchSize(SEARCH, 2)).isEqualTo(2);
+
+    overFetch.put(SEARCH, sort(1), 2, hits(2, 3), false);
+    assertThat(overFetch.take(SEARCH, sort(1), 2, 2)).isNull();
+    assertThat(overFetch.fetchSize(SEARCH, 2)).isEqualTo(4);
+  }
+
+  @Test
+  public void shortExcessIsServedIfSearchIsExhausted() {
+    overFetch.put(SEARCH, sort(1), 2, hits(2, 3), true);
+    ElasticOverFetch.Page page = overFetch.take(SEARCH, sort(1), 2, 2);
+    assertThat(page).isNotNull();
+    assertThat(page.exhausted).isTrue();
+  }
+
+  @Test
+  public void pageWithoutExcessLeavesFollowUpToPrefetchedSearch() {
+    // A page fetched without excess hits may have started a prefetch of the next page, which is
+    // only taken if the over-fetch does not serve the follow-up search.
+    overFetch.put(SEARCH, sort(1), 2, hits(2, 2), false);
+    assertThat(overFetch.take(SEARCH, sort(1), 2, 2)).isNull();
+  }
+
+  @Test
+  public void servedPagesContinueOffsetCursors() {
+    // The first page fetches twice the page size.
+    offsetCursors.put(SEARCH, 0, hits(0, 4));
+    overFetch.put(SEARCH, sort(1), 2, hits(2, 4), false);
+    assertThat(offsetCursors.get(SEARCH, 2)).isEqualTo(sort(1));
+
+    // A search for another page replaces the cursors of the search.
+    offsetCursors.put(SEARCH, 10, hits(10, 12));
+    assertThat(offsetCursors.get(SEARCH, 4)).isNull();
+
+    // Serving the second page from the excess hits records its cursors again, so that the third
+    // page continues after it.
+    ElasticOverFetch.Page page = overFetch.take(SEARCH, null, 2, 2);
+    assertThat(page).isNotNull();
+    offsetCursors.put(SEARCH, page.start, page.hits);
+    assertThat(offsetCursors.get(SEARCH, 4)).isEqualTo(sort(3));
+  }
+
+  @Test
+  public void hitsWithoutSortValuesAreNotRecorded() {
+    List<JsonObject> hits = new ArrayList<>();
+    hits.add(new JsonObject());
+    offsetCursors.put(SEARCH, 0, hits);
+    assertThat(offsetCursors.get(SEARCH, 1)).isNull();
+  }
+
+  private static List<JsonObject> hits(int from, int to) {
+    List<JsonObject> hits = new ArrayList<>();
+    for (int i = from; i < to; i++) {
+      JsonObject hit = new JsonObject();
+      hit.addProperty("_id", Integer.toString(i));
+      hit.add("sort", sort(i));
+      hits.add(hit);
+    }
+    return hits;
+  }
+
+  private static JsonArray sort(int i) {
+    JsonArray sort = new JsonArray();
+    sort.add(i);
+    return sort;
+  }
+}
@@ -0,0 +1,157 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_PREFETCH_NEXT_PAGE;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_SERVER;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.SECTION_ELASTICSEARCH;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.gerrit.elasticsearch.builders.QueryBuilders;
+import com.google.gerrit.elasticsearch.builders.SearchSourceBuilder;
+import com.google.gerrit.index.IndexConfig;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Test;
+
+public class ElasticPagePrefetcherTest {
+  private static final String SORT = "[{\"_id\":{\"order\":\"asc\"}}]";
+  private static final ImmutableMap<String, String> PARAMS = ImmutableMap.of("routing", "foo");
+
+  private final AtomicLong nanos = new AtomicLong();
+  private final List<String> endpoints = new ArrayList<>();
+  private final List<SettableFuture<JsonObject>> responses = new ArrayList<>();
+
+  @Test
+  public void followUpSearchTakesPrefetchedPage() {
+    ElasticPagePrefetcher prefetcher = newPrefetcher(true);
+    JsonArray lastSortValues = new JsonArray();
+    lastSortValues.add("42");
+
+    // The first page and the follow-up, built like the query source builds them.
+    SearchSourceBuilder firstPage = searchSource(2).from(0).sort(SORT);
+    prefetcher.prefetch(
+        "index/_search", ElasticPagePrefetcher.nextPageSearch(firstPage, lastSortValues), PARAMS);
+    JsonObject response = new JsonObject();
+    responses.get(0).set(response);
+
+    String followUp = searchSource(2).searchAfter(lastSortValues).sort(SORT).toString();
+    assertThat(prefetcher.take(followUp, PARAMS)).isSameInstanceAs(response);
+    assertThat(prefetcher.take(followUp, PARAMS)).isNull();
+  }
+
+  @Test
+  public void otherSearchesDoNotTakePrefetchedPage() {
+    ElasticPagePrefetcher prefetcher = newPrefetcher(true);
+    prefetcher.prefetch("index/_search", "search", PARAMS);
+    responses.get(0).set(new JsonObject());
+
+    assertThat(prefetcher.take("other", PARAMS)).isNull();
+    assertThat(prefetcher.take("search", ImmutableMap.of())).isNull();
+    assertThat(prefetcher.take("search", PARAMS)).isNotNull();
+  }
+
+  @Test
+  public void endpointStartsWithSlash() {
+    ElasticPagePrefetcher prefetcher = newPrefetcher(true);
+    prefetcher.prefetch("index/_search", "a", PARAMS);
+    prefetcher.prefetch("/index/_search", "b", PARAMS);
+
+    assertThat(endpoints).containsExactly("/index/_search", "/index/_search");
+  }
+
+  @Test
+  public void expiredPrefetchIsCancelled() {
+    ElasticPagePrefetcher prefetcher = newPrefetcher(true);
+    prefetcher.prefetch("index/_search", "search", PARAMS);
+
+    nanos.addAndGet(SECONDS.toNanos(ElasticPagePrefetcher.PREFETCH_EXPIRY_SECONDS));
+    assertThat(prefetcher.take("search", PARAMS)).isNull();
+    assertThat(responses.get(0).isCancelled()).isTrue();
+  }
+
+  @Test
+  public void takenPrefetchIsNotCancelled() {
+    ElasticPagePrefetcher prefetcher = newPrefetcher(true);
+    prefetcher.prefetch("index/_search", "search", PARAMS);
+    responses.get(0).set(new JsonObject());
+
+    assertThat(prefetcher.take("search", PARAMS)).isNotNull();
+    assertThat(responses.get(0).isCancelled()).isFalse();
+  }
+
+  @Test
+  public void failedPrefetchFallsBackToSearch() {
+    ElasticPagePrefetcher prefetcher = newPrefetcher(true);
+    prefetcher.prefetch("index/_search", "search", PARAMS);
+    responses.get(0).setException(new IOException("connection reset"));
+
+    assertThat(prefetcher.take("search", PARAMS)).isNull();
+  }
+
+  @Test
+  public void nothingIsPrefetchedIfDisabled() {
+    ElasticPagePrefetcher prefetcher = newPrefetcher(false);
+    assertThat(prefetcher.isEnabled()).isFalse();
+
+    prefetcher.prefetch("index/_search", "search", PARAMS);
+    assertThat(endpoints).isEmpty();
+    assertThat(prefetcher.take("search", PARAMS)).isNull();
+  }
+
+  private static SearchSourceBuilder searchSource(int size) {
+    return new SearchSourceBuilder(new ElasticQueryAdapter())
+        .query(QueryBuilders.termQuery("project", "foo"))
+        .size(size)
+        .trackTotalHits(false)
+        .trackScores(false)
+        .fields(ImmutableList.of("_id"));
+  }
+
+  private ElasticPagePrefetcher newPrefetcher(boolean enabled) {
+    Config cfg = new Config();
+    cfg.setString(SECTION_ELASTICSEARCH, null, KEY_SERVER, "http://elastic:1234");
+    cfg.setBoolean(SECTION_ELASTICSEARCH, null, KEY_PREFETCH_NEXT_PAGE, enabled);
+    return new ElasticPagePrefetcher(
+        new ElasticConfiguration(cfg, IndexConfig.fromConfig(cfg).build()),
+        "index",
+        this::send,
+        new Ticker() {
+          @Override
+          public long read() {
+            return nanos.get();
+          }
+        });
+  }
+
+  private SettableFuture<JsonObject> send(
+      String endpoint, String search, Map<String, String> params) {
+    SettableFuture<JsonObject> response = SettableFuture.create();
+    endpoints.add(endpoint);
+    responses.add(response);
+    return response;
+  }
+}
@@ -0,0 +1,205 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_ACCELERATE_PREFIX_QUERIES;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_ACCELERATE_REGEX_QUERIES;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_SERVER;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.SECTION_ELASTICSEARCH;
+
+import com.google.gerrit.elasticsearch.builders.SearchSourceBuilder;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.index.IndexConfig;
+import com.google.gerrit.index.query.Predicate;
+import com.google.gerrit.server.index.change.ChangeField;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.query.change.ChangePredicates;
+import com.google.gerrit.server.query.change.ChangeStatusPredicate;
+import com.google.gerrit.server.query.change.RegexPathPredicate;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Test;
+
+public class ElasticQueryBuilderTest {
+  private static final String ID = ChangeField.NUMERIC_ID_STR_SPEC.getName();
+  private static final String PROJECT = ChangeField.PROJECT_SPEC.getName();
+  private static final String PROJECTS = ChangeField.PROJECTS_SPEC.getName();
+  private static final String PATH = ChangeField.PATH_SPEC.getName();
+
+  private final ElasticQueryBuilder queryBuilder = new ElasticQueryBuilder(newElasticConfig());
+
+  @Test
+  public void sameFieldTermDisjunctionIsMergedIntoTermsQuery() throws Exception {
+    String query =
+        toJson(Predicate.or(change(1), Predicate.or(change(2), change(3)), project("foo")));
+    assertThat(query).contains("{\"terms\":{\"" + ID + "\":[\"1\",\"2\",\"3\"]}}");
+    assertThat(query).contains("{\"term\":{\"" + PROJECT + "\":\"foo\"}}");
+    assertThat(query).doesNotContain("{\"term\":{\"" + ID);
+  }
+
+  @Test
+  public void singleTermDisjunctionIsNotWrapped() throws Exception {
+    assertThat(toJson(Predicate.or(change(1), change(1))))
+        .isEqualTo("{\"query\":{\"term\":{\"" + ID + "\":\"1\"}}}");
+  }
+
+  @Test
+  public void nestedConjunctionsAreFlattened() throws Exception {
+    Predicate<ChangeData> p =
+        Predicate.and(
+            project("foo"), Predicate.and(ChangeStatusPredicate.open(), Predicate.any()));
+    String query = toJson(p);
+    assertThat(query).startsWith("{\"query\":{\"bool\":{\"filter\":[");
+    assertThat(query).doesNotContain("match_all");
+    assertThat(query.indexOf("\"bool\"", query.indexOf("\"filter\""))).isEqualTo(-1);
+  }
+
+  @Test
+  public void negationInConjunctionIsAddedAsMustNot() throws Exception {
+    String query = toJson(Predicate.and(project("foo"), Predicate.not(change(1))));
+    assertThat(query)
+        .isEqualTo(
+            "{\"query\":{\"bool\":{\"filter\":{\"term\":{\""
+                + PROJECT
+                + "\":\"foo\"}},\"must_not\":{\"term\":{\""
+                + ID
+                + "\":\"1\"}}}}}");
+  }
+
+  @Test
+  public void negationIsNotCombinedWithMatchAll() throws Exception {
+    assertThat(toJson(Predicate.not(project("foo")))).doesNotContain("match_all");
+  }
+
+  @Test
+  public void requiredValuesOfTopLevelConstraints() throws Exception {
+    assertThat(queryBuilder.requiredValues(project("foo"), PROJECT)).containsExactly("foo");
+    assertThat(
+            queryBuilder.requiredValues(
+                Predicate.and(ChangeStatusPredicate.open(), project("foo")), PROJECT))
+        .containsExactly("foo");
+    assertThat(
+            queryBuilder.requiredValues(
+                Predicate.and(
+                    Predicate.or(project("foo"), project("bar")),
+                    Predicate.or(project("bar"), project("baz"))),
+                PROJECT))
+        .containsExactly("bar");
+    assertThat(
+            queryBuilder.requiredValues(
+                Predicate.or(
+                    Predicate.and(project("foo"), change(1)),
+                    Predicate.and(project("bar"), change(2))),
+                PROJECT))
+        .containsExactly("foo", "bar")
+        .inOrder();
+  }
+
+  @Test
+  public void noRequiredValuesIfFieldIsNotConstrainedEverywhere() throws Exception {
+    assertThat(queryBuilder.requiredValues(change(1), PROJECT)).isNull();
+    assertThat(queryBuilder.requiredValues(Predicate.or(project("foo"), change(1)), PROJECT))
+        .isNull();
+    assertThat(queryBuilder.requiredValues(Predicate.not(project("foo")), PROJECT)).isNull();
+  }
+
+  @Test
+  public void lookupValuesOfIdDisjunction() throws Exception {
+    assertThat(queryBuilder.lookupValues(change(3), ID)).containsExactly("3");
+    assertThat(
+            queryBuilder.lookupValues(
+                Predicate.or(change(3), Predicate.or(change(12), change(3))), ID))
+        .containsExactly("12", "3")
+        .inOrder();
+  }
+
+  @Test
+  public void noLookupValuesIfOtherConstraintsApply() throws Exception {
+    assertThat(queryBuilder.lookupValues(Predicate.and(change(1), project("foo")), ID)).isNull();
+    assertThat(queryBuilder.lookupValues(Predicate.or(change(1), project("foo")), ID)).isNull();
+    assertThat(queryBuilder.lookupValues(Predicate.not(change(1)), ID)).isNull();
+  }
+
+  @Test
+  public void regexQueriesUseWildcardSubfieldIfAccelerated() throws Exception {
+    Predicate<ChangeData> regex = new RegexPathPredicate("^.*\\.proto");
+    assertThat(toJson(regex)).contains("{\"regexp\":{\"" + PATH + "\":");
+
+    ElasticQueryBuilder accelerated = new ElasticQueryBuilder(newElasticConfig(true, false));
+    assertThat(toJson(accelerated, regex))
+        .contains("{\"regexp\":{\"" + PATH + "." + ElasticMapping.WILDCARD_SUBFIELD + "\":");
+    assertThat(toJson(accelerated, new RegexPathPredicate("^src/.*")))
+        .isEqualTo(
+            "{\"query\":{\"prefix\":{\""
+                + PATH
+                + "."
+                + ElasticMapping.WILDCARD_SUBFIELD
+                + "\":\"src/\"}}}");
+  }
+
+  @Test
+  public void regexQueriesUseFieldIfIndexHasNoWildcardSubfield() throws Exception {
+    ElasticQueryBuilder accelerated =
+        new ElasticQueryBuilder(newElasticConfig(true, false), () -> false);
+    assertThat(toJson(accelerated, new RegexPathPredicate("^.*\\.proto")))
+        .contains("{\"regexp\":{\"" + PATH + "\":");
+  }
+
+  @Test
+  public void prefixQueriesUsePrefixQueryIfAccelerated() throws Exception {
+    Predicate<ChangeData> prefix = ChangePredicates.projectPrefix("plugins/");
+    assertThat(toJson(prefix))
+        .isEqualTo("{\"query\":{\"match_phrase_prefix\":{\"" + PROJECTS + "\":\"plugins/\"}}}");
+
+    ElasticQueryBuilder accelerated = new ElasticQueryBuilder(newElasticConfig(false, true));
+    assertThat(toJson(accelerated, prefix))
+        .isEqualTo("{\"query\":{\"prefix\":{\"" + PROJECTS + "\":\"plugins/\"}}}");
+  }
+
+  private String toJson(Predicate<ChangeData> p) throws Exception {
+    return toJson(queryBuilder, p);
+  }
+
+  private static String toJson(ElasticQueryBuilder queryBuilder, Predicate<ChangeData> p)
+      throws Exception {
+    return new SearchSourceBuilder(new ElasticQueryAdapter())
+        .query(queryBuilder.toQueryBuilder(p))
+        .toString();
+  }
+
+  private static ElasticConfiguration newElasticConfig() {
+    return newElasticConfig(false, false);
+  }
+
+  private static ElasticConfiguration newElasticConfig(
+      boolean accelerateRegexQueries, boolean acceleratePrefixQueries) {
+    Config cfg = new Config();
+    cfg.setString(SECTION_ELASTICSEARCH, null, KEY_SERVER, "http://elastic:1234");
+    cfg.setBoolean(
+        SECTION_ELASTICSEARCH, null, KEY_ACCELERATE_REGEX_QUERIES, accelerateRegexQueries);
+    cfg.setBoolean(
+        SECTION_ELASTICSEARCH, null, KEY_ACCELERATE_PREFIX_QUERIES, acceleratePrefixQueries);
+    return new ElasticConfiguration(cfg, IndexConfig.fromConfig(cfg).build());
+  }
+
+  private static Predicate<ChangeData> change(int id) {
+    return ChangePredicates.idStr(Change.id(id));
+  }
+
+  private static Predicate<ChangeData> project(String name) {
+    return ChangePredicates.project(Project.nameKey(name));
+  }
+}
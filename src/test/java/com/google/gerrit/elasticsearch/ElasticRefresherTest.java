@@ -0,0 +1,224 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_REFRESH_MODE;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_REFRESH_SCOPE;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.KEY_SERVER;
+import static com.google.gerrit.elasticsearch.ElasticConfiguration.SECTION_ELASTICSEARCH;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.index.IndexConfig;
+import com.google.inject.OutOfScopeException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.jgit.lib.Config;
+import org.junit.After;
+import org.junit.Test;
+
+public class ElasticRefresherTest {
+  private static final Account.Id USER_1 = Account.id(1);
+  private static final Account.Id USER_2 = Account.id(2);
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final AtomicInteger refreshes = new AtomicInteger();
+  private volatile Account.Id currentUser;
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void immediateModeRefreshesOnWrite() {
+    ElasticRefresher refresher =
+        newRefresher(ElasticRefresher.Mode.IMMEDIATE, ElasticRefresher.Scope.ALL, this::refresh);
+    assertThat(refresher.refreshOnWrite()).isTrue();
+
+    refresher.written();
+    assertThat(refresher.refreshIfNeeded()).isFalse();
+    assertThat(refreshes.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void searchRefreshesWritesOnce() {
+    ElasticRefresher refresher = newRefresher(ElasticRefresher.Scope.ALL, this::refresh);
+    assertThat(refresher.refreshOnWrite()).isFalse();
+    assertThat(refresher.refreshIfNeeded()).isFalse();
+
+    refresher.written();
+    refresher.written();
+    assertThat(refresher.refreshIfNeeded()).isTrue();
+    assertThat(refresher.refreshIfNeeded()).isFalse();
+    assertThat(refreshes.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void concurrentSearchesCoalesceIntoOneRefresh() throws Exception {
+    CountDownLatch refreshStarted = new CountDownLatch(1);
+    CountDownLatch refreshReleased = new CountDownLatch(1);
+    ElasticRefresher refresher =
+        newRefresher(
+            ElasticRefresher.Scope.ALL,
+            () -> {
+              refreshStarted.countDown();
+              await(refreshReleased);
+              refresh();
+            });
+    refresher.written();
+
+    List<Future<Boolean>> searches = new ArrayList<>();
+    searches.add(executor.submit(refresher::refreshIfNeeded));
+    await(refreshStarted);
+    List<Thread> waiting = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      searches.add(
+          executor.submit(
+              () -> {
+                synchronized (waiting) {
+                  waiting.add(Thread.currentThread());
+                }
+                return refresher.refreshIfNeeded();
+              }));
+    }
+    awaitBlocked(waiting, 3);
+    refreshReleased.countDown();
+
+    for (Future<Boolean> search : searches) {
+      assertThat(search.get(30, SECONDS)).isTrue();
+    }
+    assertThat(refreshes.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void writesDuringRefreshAreNotMarkedRefreshed() {
+    ElasticRefresher[] refresher = new ElasticRefresher[1];
+    refresher[0] =
+        newRefresher(
+            ElasticRefresher.Scope.ALL,
+            () -> {
+              if (refreshes.get() == 0) {
+                // A write that is not included in the refresh in progress.
+                refresher[0].written();
+              }
+              refresh();
+            });
+    refresher[0].written();
+
+    assertThat(refresher[0].refreshIfNeeded()).isTrue();
+    assertThat(refreshes.get()).isEqualTo(1);
+
+    assertThat(refresher[0].refreshIfNeeded()).isTrue();
+    assertThat(refreshes.get()).isEqualTo(2);
+
+    assertThat(refresher[0].refreshIfNeeded()).isFalse();
+    assertThat(refreshes.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void userScopeOnlyRefreshesWritesOfSameUser() {
+    ElasticRefresher refresher = newRefresher(ElasticRefresher.Scope.USER, this::refresh);
+    currentUser = USER_2;
+    refresher.written();
+
+    currentUser = USER_1;
+    assertThat(refresher.refreshIfNeeded()).isFalse();
+    assertThat(refreshes.get()).isEqualTo(0);
+
+    currentUser = USER_2;
+    assertThat(refresher.refreshIfNeeded()).isTrue();
+    assertThat(refreshes.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void unattributedWritesAreSeenUnderUserScope() {
+    ElasticRefresher refresher = newRefresher(ElasticRefresher.Scope.USER, this::refresh);
+    currentUser = null;
+    refresher.written();
+
+    currentUser = USER_1;
+    assertThat(refresher.refreshIfNeeded()).isTrue();
+    assertThat(refreshes.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void refreshAllIgnoresUserScope() {
+    ElasticRefresher refresher = newRefresher(ElasticRefresher.Scope.USER, this::refresh);
+    currentUser = USER_2;
+    refresher.written();
+
+    currentUser = USER_1;
+    refresher.refreshAllIfNeeded();
+    assertThat(refreshes.get()).isEqualTo(1);
+  }
+
+  private void refresh() {
+    refreshes.incrementAndGet();
+  }
+
+  private ElasticRefresher newRefresher(ElasticRefresher.Scope scope, Runnable refresh) {
+    return newRefresher(ElasticRefresher.Mode.ON_SEARCH, scope, refresh);
+  }
+
+  private ElasticRefresher newRefresher(
+      ElasticRefresher.Mode mode, ElasticRefresher.Scope scope, Runnable refresh) {
+    Config cfg = new Config();
+    cfg.setString(SECTION_ELASTICSEARCH, null, KEY_SERVER, "http://elastic:1234");
+    cfg.setEnum(SECTION_ELASTICSEARCH, null, KEY_REFRESH_MODE, mode);
+    cfg.setEnum(SECTION_ELASTICSEARCH, null, KEY_REFRESH_SCOPE, scope);
+    ElasticCurrentUser user =
+        new ElasticCurrentUser(
+            () -> {
+              throw new OutOfScopeException("not in a request");
+            }) {
+          @Override
+          Account.Id getAccountId() {
+            return currentUser;
+          }
+        };
+    return new ElasticRefresher(
+        new ElasticConfiguration(cfg, IndexConfig.fromConfig(cfg).build()), true, user, refresh);
+  }
+
+  /** Waits until the given number of threads are blocked waiting for the refresh in progress. */
+  private static void awaitBlocked(List<Thread> threads, int count) throws InterruptedException {
+    long deadline = System.nanoTime() + SECONDS.toNanos(30);
+    while (true) {
+      synchronized (threads) {
+        if (threads.size() == count
+            && threads.stream().allMatch(t -> t.getState() == Thread.State.BLOCKED)) {
+          return;
+        }
+      }
+      assertThat(System.nanoTime()).isLessThan(deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      assertThat(latch.await(30, SECONDS)).isTrue();
+    } catch (InterruptedException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
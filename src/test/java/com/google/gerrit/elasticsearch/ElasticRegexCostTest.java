@@ -0,0 +1,57 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+public class ElasticRegexCostTest {
+  @Test
+  public void literalPrefix() {
+    assertThat(ElasticRegexCost.of("src/main/.*\\.java").literalPrefix()).isEqualTo("src/main/");
+    assertThat(ElasticRegexCost.of("foo\\.bar[0-9]").literalPrefix()).isEqualTo("foo.bar");
+    assertThat(ElasticRegexCost.of(".*\\.proto").literalPrefix()).isEmpty();
+  }
+
+  @Test
+  public void optionalCharactersAreNotPartOfLiteralPrefix() {
+    assertThat(ElasticRegexCost.of("abc?d").literalPrefix()).isEqualTo("ab");
+    assertThat(ElasticRegexCost.of("abc*d").literalPrefix()).isEqualTo("ab");
+    assertThat(ElasticRegexCost.of("abc{0,2}d").literalPrefix()).isEqualTo("ab");
+    assertThat(ElasticRegexCost.of("abc+d").literalPrefix()).isEqualTo("abc");
+  }
+
+  @Test
+  public void topLevelAlternationHasNoLiteralPrefix() {
+    assertThat(ElasticRegexCost.of("foo.*|bar.*").literalPrefix()).isEmpty();
+    assertThat(ElasticRegexCost.of("foo(a|b)").literalPrefix()).isEqualTo("foo");
+  }
+
+  @Test
+  public void complexityCountsRepetitionsAndAlternations() {
+    assertThat(ElasticRegexCost.of("foo").complexity()).isEqualTo(0);
+    assertThat(ElasticRegexCost.of(".*a+(b|c){2}").complexity()).isEqualTo(4);
+    assertThat(ElasticRegexCost.of("[*+|]\\*").complexity()).isEqualTo(0);
+  }
+
+  @Test
+  public void prefixOnly() {
+    assertThat(ElasticRegexCost.of("src/.*").isPrefixOnly()).isTrue();
+    assertThat(ElasticRegexCost.of("src/.*\\.java").isPrefixOnly()).isFalse();
+    assertThat(ElasticRegexCost.of("sr?c/.*").isPrefixOnly()).isFalse();
+    assertThat(ElasticRegexCost.of(".*").isPrefixOnly()).isFalse();
+  }
+}
@@ -0,0 +1,128 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Test;
+
+public class ElasticResponseParserTest {
+  private static final String HIT =
+      "{\"_index\":\"gerrit_changes\",\"_id\":\"1\",\"_score\":null,"
+          + "\"_source\":{\"project\":\"foo\",\"nested\":{\"a\":[1,2]}},"
+          + "\"fields\":{\"_id\":[\"1\"]},\"sort\":[1700000000000,\"1\"]}";
+
+  private static final String SEARCH =
+      "{\"took\":3,\"timed_out\":false,\"_shards\":{\"total\":1,\"successful\":1},"
+          + "\"hits\":{\"total\":{\"value\":1,\"relation\":\"eq\"},\"max_score\":null,"
+          + "\"hits\":["
+          + HIT
+          + "]}}";
+
+  @Test
+  public void searchResponseKeepsReadPartsOfHits() throws Exception {
+    JsonObject response = ElasticResponseParser.parseSearch(stream(SEARCH));
+
+    JsonObject expected = JsonParser.parseString(SEARCH).getAsJsonObject();
+    JsonObject expectedHit =
+        expected.getAsJsonObject("hits").getAsJsonArray("hits").get(0).getAsJsonObject();
+    expectedHit.remove("_index");
+    expectedHit.remove("_id");
+    expectedHit.remove("_score");
+    assertThat(response).isEqualTo(expected);
+  }
+
+  @Test
+  public void sortValuesKeepTheirText() throws Exception {
+    JsonObject hit =
+        ElasticResponseParser.parseSearch(stream(SEARCH))
+            .getAsJsonObject("hits")
+            .getAsJsonArray("hits")
+            .get(0)
+            .getAsJsonObject();
+    assertThat(hit.getAsJsonArray("sort").toString()).isEqualTo("[1700000000000,\"1\"]");
+  }
+
+  @Test
+  public void multiSearchResponsesAreReducedLikeSearchResponses() throws Exception {
+    String error = "{\"error\":{\"type\":\"index_not_found_exception\"},\"status\":404}";
+    JsonObject response =
+        ElasticResponseParser.parseSearch(
+            stream("{\"took\":5,\"responses\":[" + SEARCH + "," + error + "]}"));
+
+    assertThat(response.getAsJsonArray("responses").get(0))
+        .isEqualTo(ElasticResponseParser.parseSearch(stream(SEARCH)));
+    assertThat(response.getAsJsonArray("responses").get(1))
+        .isEqualTo(JsonParser.parseString(error));
+  }
+
+  @Test
+  public void multiGetDocumentsKeepFoundAndSource() throws Exception {
+    JsonObject response =
+        ElasticResponseParser.parseSearch(
+            stream(
+                "{\"docs\":[{\"_index\":\"i\",\"_id\":\"1\",\"_version\":3,\"found\":true,"
+                    + "\"_source\":{\"project\":\"foo\"}},"
+                    + "{\"_index\":\"i\",\"_id\":\"2\",\"found\":false}]}"));
+
+    assertThat(response)
+        .isEqualTo(
+            JsonParser.parseString(
+                "{\"docs\":[{\"found\":true,\"_source\":{\"project\":\"foo\"}},"
+                    + "{\"found\":false}]}"));
+  }
+
+  @Test
+  public void scrollResponseKeepsScrollId() throws Exception {
+    JsonObject response =
+        ElasticResponseParser.parseSearch(
+            stream("{\"_scroll_id\":\"abc\",\"hits\":{\"hits\":[]}}"));
+
+    assertThat(response.get("_scroll_id").getAsString()).isEqualTo("abc");
+    assertThat(response.getAsJsonObject("hits").getAsJsonArray("hits")).isEmpty();
+  }
+
+  @Test
+  public void otherResponsesAreKeptWhole() throws Exception {
+    String json =
+        "{\"count\":12,\"ratio\":0.5,\"ok\":true,\"missing\":null,"
+            + "\"hits\":{\"hits\":[{\"_id\":\"1\",\"_index\":\"i\"}]}}";
+    assertThat(ElasticResponseParser.parse(stream(json))).isEqualTo(JsonParser.parseString(json));
+  }
+
+  @Test
+  public void nonObjectIsRejected() {
+    assertThrows(IOException.class, () -> ElasticResponseParser.parse(stream("[1]")));
+    assertThrows(IOException.class, () -> ElasticResponseParser.parseSearch(stream("")));
+  }
+
+  @Test
+  public void truncatedContentIsRejected() {
+    assertThrows(
+        IOException.class,
+        () -> ElasticResponseParser.parseSearch(stream(SEARCH.substring(0, SEARCH.length() - 3))));
+  }
+
+  private static InputStream stream(String json) {
+    return new ByteArrayInputStream(json.getBytes(UTF_8));
+  }
+}
@@ -0,0 +1,117 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class ElasticScanTest {
+  private final ElasticScan scan =
+      new ElasticScan(MoreExecutors.newDirectExecutorService(), "test");
+
+  @Test
+  public void hitsOfAllSlicesAreMergedAndScrollsAreCleared() {
+    FakeScroll scroll =
+        new FakeScroll(
+            ImmutableList.of(
+                ImmutableList.of(ImmutableList.of("a", "b"), ImmutableList.of("c")),
+                ImmutableList.of(ImmutableList.of("d"))));
+    List<String> ids = Collections.synchronizedList(new ArrayList<>());
+
+    scan.scan(2, scroll, hits -> hits.forEach(h -> ids.add(id(h))));
+
+    assertThat(ids).containsExactly("a", "b", "c", "d");
+    assertThat(scroll.cleared).containsExactly("0-2", "1-1");
+  }
+
+  @Test
+  public void scrollIsClearedWhenReadingFails() {
+    FakeScroll scroll =
+        new FakeScroll(ImmutableList.of(ImmutableList.of(ImmutableList.of("a", "b"))));
+
+    StorageException thrown =
+        assertThrows(
+            StorageException.class,
+            () ->
+                scan.scan(
+                    1,
+                    scroll,
+                    hits -> {
+                      throw new StorageException("failed");
+                    }));
+
+    assertThat(thrown).hasMessageThat().isEqualTo("failed");
+    assertThat(scroll.cleared).containsExactly("0-0");
+  }
+
+  private static String id(JsonElement hit) {
+    return hit.getAsJsonObject().get("_id").getAsString();
+  }
+
+  /** Serves the pages of ids of each slice, using {@code slice-page} as scroll id. */
+  private static class FakeScroll implements ElasticScan.Scroll {
+    final ImmutableList<ImmutableList<ImmutableList<String>>> slices;
+    final List<String> cleared = Collections.synchronizedList(new ArrayList<>());
+
+    FakeScroll(ImmutableList<ImmutableList<ImmutableList<String>>> slices) {
+      this.slices = slices;
+    }
+
+    @Override
+    public JsonObject open(int slice) {
+      return response(slice, 0);
+    }
+
+    @Override
+    public JsonObject next(String scrollId) {
+      String[] parts = scrollId.split("-");
+      return response(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]) + 1);
+    }
+
+    @Override
+    public void clear(String scrollId) {
+      cleared.add(scrollId);
+    }
+
+    private JsonObject response(int slice, int page) {
+      JsonArray hits = new JsonArray();
+      ImmutableList<ImmutableList<String>> pages = slices.get(slice);
+      if (page < pages.size()) {
+        for (String id : pages.get(page)) {
+          JsonObject hit = new JsonObject();
+          hit.addProperty("_id", id);
+          hits.add(hit);
+        }
+      }
+      JsonObject hitsObject = new JsonObject();
+      hitsObject.add("hits", hits);
+      JsonObject response = new JsonObject();
+      response.addProperty("_scroll_id", slice + "-" + page);
+      response.add("hits", hitsObject);
+      return response;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.elasticsearch;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonPrimitive;
+import java.sql.Timestamp;
+import java.time.Instant;
+import org.junit.Test;
+
+public class ElasticStoredValueTest {
+  @Test
+  public void arrayValuesAreConverted() {
+    JsonArray array = new JsonArray();
+    array.add(1);
+    array.add(2);
+    array.add(3);
+    ElasticStoredValue value = new ElasticStoredValue(array);
+    assertThat(value.asIntegers()).containsExactly(1, 2, 3).inOrder();
+    assertThat(value.asLongs()).containsExactly(1L, 2L, 3L).inOrder();
+    assertThat(value.asStrings()).containsExactly("1", "2", "3").inOrder();
+  }
+
+  @Test
+  public void singleValueIsTreatedAsSingletonList() {
+    assertThat(new ElasticStoredValue(new JsonPrimitive("foo")).asStrings())
+        .containsExactly("foo");
+  }
+
+  @Test
+  public void timestampFromEpochMillis() {
+    assertThat(new ElasticStoredValue(new JsonPrimitive(1234567890123L)).asTimestamp())
+        .isEqualTo(new Timestamp(1234567890123L));
+  }
+
+  @Test
+  public void timestampFromIsoInstant() {
+    for (String value :
+        new String[] {
+          "1970-01-01T00:00:00Z",
+          "2009-02-13T23:31:30Z",
+          "2009-02-13T23:31:30.1Z",
+          "2009-02-13T23:31:30.123Z",
+          "2024-02-29T12:00:00.123456789Z",
+          "1969-12-31T23:59:59.999Z",
+          "2400-03-01T00:00:00Z",
+        }) {
+      assertThat(ElasticStoredValue.parseIsoInstant(value))
+          .isEqualTo(Timestamp.from(Instant.parse(value)));
+      assertThat(new ElasticStoredValue(new JsonPrimitive(value)).asTimestamp())
+          .isEqualTo(Timestamp.from(Instant.parse(value)));
+    }
+  }
+
+  @Test
+  public void otherTimestampFormsAreNotParsedByFastPath() {
+    assertThat(ElasticStoredValue.parseIsoInstant("2009-02-13T23:31:30+01:00")).isNull();
+    assertThat(ElasticStoredValue.parseIsoInstant("2009-02-13 23:31:30Z")).isNull();
+    assertThat(ElasticStoredValue.parseIsoInstant("2009-02-13T23:31:30.Z")).isNull();
+    assertThat(ElasticStoredValue.parseIsoInstant("+12009-02-13T23:31:30Z")).isNull();
+  }
+
+  @Test
+  public void impossibleDatesAreRejected() {
+    assertThat(ElasticStoredValue.parseIsoInstant("2024-02-30T00:00:00Z")).isNull();
+    assertThat(ElasticStoredValue.parseIsoInstant("2023-02-29T00:00:00Z")).isNull();
+    assertThat(ElasticStoredValue.parseIsoInstant("1900-02-29T00:00:00Z")).isNull();
+    assertThat(ElasticStoredValue.parseIsoInstant("2024-04-31T00:00:00Z")).isNull();
+    assertThat(ElasticStoredValue.parseIsoInstant("2024-02-29T00:00:00Z"))
+        .isEqualTo(Timestamp.from(Instant.parse("2024-02-29T00:00:00Z")));
+    assertThat(ElasticStoredValue.parseIsoInstant("2000-02-29T00:00:00Z"))
+        .isEqualTo(Timestamp.from(Instant.parse("2000-02-29T00:00:00Z")));
+  }
+}
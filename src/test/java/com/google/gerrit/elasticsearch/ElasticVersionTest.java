@@ -43,6 +43,14 @@ public class ElasticVersionTest {
     assertThat(ElasticVersion.forVersion("8.15.2")).isEqualTo(ElasticVersion.V8);
   }
 
+  @Test
+  public void isAtLeast() throws Exception {
+    assertThat(ElasticVersion.isAtLeast("7.8.1", 7, 9)).isFalse();
+    assertThat(ElasticVersion.isAtLeast("7.9.0", 7, 9)).isTrue();
+    assertThat(ElasticVersion.isAtLeast("7.17.1", 7, 9)).isTrue();
+    assertThat(ElasticVersion.isAtLeast("8.0.0-rc2", 7, 9)).isTrue();
+  }
+
   @Test
   public void unsupportedVersion() throws Exception {
     ElasticVersion.UnsupportedVersion thrown =